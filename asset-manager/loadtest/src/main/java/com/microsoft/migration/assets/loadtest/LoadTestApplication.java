@@ -0,0 +1,211 @@
+package com.microsoft.migration.assets.loadtest;
+
+import com.microsoft.migration.assets.loadtest.http.HttpDriver;
+import com.microsoft.migration.assets.loadtest.metrics.Metrics;
+import com.microsoft.migration.assets.loadtest.metrics.ThumbnailLagTracker;
+import com.microsoft.migration.assets.loadtest.scenario.Scenario;
+import com.microsoft.migration.assets.loadtest.scenario.Scenarios;
+import com.microsoft.migration.assets.loadtest.standin.AppProcess;
+import com.microsoft.migration.assets.loadtest.standin.EmbeddedBroker;
+import com.microsoft.migration.assets.loadtest.standin.EmbeddedDatabase;
+import com.microsoft.migration.assets.loadtest.standin.MockS3Server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Command line entry point. Three ways to run:
+ *
+ * <ul>
+ *     <li>{@code --web-jar=... --worker-jar=...}: start the stand-ins and both applications, run the scenario,
+ *     and report latencies including thumbnail lag</li>
+ *     <li>{@code --external-apps}: start the stand-ins and print the arguments to start the applications with,
+ *     for instance from an IDE or a profiler, then run the scenario once the web module is up</li>
+ *     <li>{@code --target=http://host:port}: run the scenario against a deployment that is already running</li>
+ * </ul>
+ *
+ * Scenario settings can be overridden with {@code --users}, {@code --duration-s}, {@code --ramp-up-s},
+ * {@code --warm-up-s} and {@code --think-time-ms}.
+ */
+public class LoadTestApplication {
+
+    private static final String BUCKET = "loadtest";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        Scenario scenario = configure(Scenarios.get(options.getOrDefault("scenario", "mixed")), options);
+        int s3Port = Integer.parseInt(options.getOrDefault("s3-port", "9090"));
+        int amqpPort = Integer.parseInt(options.getOrDefault("amqp-port", "5673"));
+        int dbPort = Integer.parseInt(options.getOrDefault("db-port", "9093"));
+        int webPort = Integer.parseInt(options.getOrDefault("web-port", "8080"));
+        long drainSeconds = Long.parseLong(options.getOrDefault("drain-s", "60"));
+
+        if (options.containsKey("target")) {
+            Metrics metrics = new Metrics();
+            double seconds = run(scenario, options.get("target"), metrics, (recordFrom, recordUntil) -> { });
+            Report.print(System.out, scenario.getName(), seconds, metrics.summarize(seconds), null);
+            return;
+        }
+
+        Metrics metrics = new Metrics();
+        ThumbnailLagTracker lagTracker = new ThumbnailLagTracker(metrics.recorder("thumbnail-lag"));
+        try (MockS3Server s3 = new MockS3Server(s3Port, lagTracker::objectStored, lagTracker::objectDeleted);
+             EmbeddedBroker broker = new EmbeddedBroker(amqpPort);
+             EmbeddedDatabase database = new EmbeddedDatabase(dbPort)) {
+            s3.start();
+            broker.start();
+            database.start();
+            List<String> common = commonArguments(s3, broker, database);
+
+            String target = "http://localhost:" + webPort;
+            Path logDirectory = Paths.get(options.getOrDefault("log-dir", "target/loadtest-logs"));
+            List<AppProcess> processes = new ArrayList<>();
+            try {
+                if (options.containsKey("external-apps")) {
+                    System.out.println("Stand-ins running. Start the web module with:");
+                    System.out.println("  " + String.join(" ", webArguments(common, webPort)));
+                    System.out.println("and the worker with:");
+                    System.out.println("  " + String.join(" ", workerArguments(common)));
+                    System.out.println("Waiting for the web module on " + target);
+                } else {
+                    processes.add(new AppProcess("web", Paths.get(required(options, "web-jar")),
+                            webArguments(common, webPort), logDirectory));
+                    processes.add(new AppProcess("worker", Paths.get(required(options, "worker-jar")),
+                            workerArguments(common), logDirectory));
+                    for (AppProcess process : processes) {
+                        process.start();
+                    }
+                }
+                awaitReady(target, processes);
+
+                double seconds = run(scenario, target, metrics, lagTracker::recordBetween);
+
+                // Give the worker time to catch up, so the lag of the last uploads is measured too
+                long deadline = System.currentTimeMillis() + drainSeconds * 1000;
+                while (lagTracker.getPending() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(500);
+                }
+                Report.print(System.out, scenario.getName(), seconds, metrics.summarize(seconds), lagTracker.getPending());
+                System.out.println("Objects in storage: " + s3.getObjectCount());
+            } finally {
+                for (AppProcess process : processes) {
+                    process.close();
+                }
+            }
+        }
+    }
+
+    private static double run(Scenario scenario, String target, Metrics metrics,
+                              BiConsumer<Long, Long> recordingWindow) throws InterruptedException {
+        System.out.printf("Running %s with %d users against %s%n", scenario.getName(), scenario.getUsers(), target);
+        return new LoadTestRunner(scenario, new HttpDriver(target, 30000), metrics).run(recordingWindow);
+    }
+
+    /**
+     * Arguments pointing both applications at the stand-ins. Features relying on PostgreSQL-only SQL are off.
+     */
+    private static List<String> commonArguments(MockS3Server s3, EmbeddedBroker broker, EmbeddedDatabase database) {
+        return Arrays.asList(
+                "--aws.s3.endpoint=" + s3.getEndpoint(),
+                "--aws.s3.bucket=" + BUCKET,
+                "--aws.secretKey=loadtest",
+                "--aws.region=us-east-1",
+                "--spring.rabbitmq.host=localhost",
+                "--spring.rabbitmq.port=" + broker.getPort(),
+                "--spring.rabbitmq.virtual-host=" + EmbeddedBroker.VIRTUAL_HOST,
+                "--spring.datasource.url=" + database.getJdbcUrl(),
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false");
+    }
+
+    private static List<String> webArguments(List<String> common, int port) {
+        List<String> arguments = new ArrayList<>(common);
+        arguments.add("--server.port=" + port);
+        arguments.add("--aws.accessKey=loadtest");
+        arguments.add("--storage.reconcile.enabled=false");
+        return arguments;
+    }
+
+    private static List<String> workerArguments(List<String> common) {
+        List<String> arguments = new ArrayList<>(common);
+        arguments.add("--aws.accessKeyId=loadtest");
+        return arguments;
+    }
+
+    private static void awaitReady(String target, List<AppProcess> processes) throws Exception {
+        HttpDriver http = new HttpDriver(target, 2000);
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(processes.isEmpty() ? 30 : 3);
+        while (System.currentTimeMillis() < deadline) {
+            for (AppProcess process : processes) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(process.getName() + " exited, see " + process.getLogFile());
+                }
+            }
+            try {
+                if (http.get("/storage").getStatus() == 200) {
+                    // The worker is not reachable over HTTP; give it a moment to start consuming
+                    Thread.sleep(5000);
+                    return;
+                }
+            } catch (Exception e) {
+                // Not listening yet
+            }
+            Thread.sleep(1000);
+        }
+        throw new IllegalStateException("Web module did not start on " + target);
+    }
+
+    private static Scenario configure(Scenario scenario, Map<String, String> options) {
+        Scenario.Builder builder = scenario.toBuilder();
+        if (options.containsKey("users")) {
+            builder.users(Integer.parseInt(options.get("users")));
+        }
+        if (options.containsKey("duration-s")) {
+            builder.duration(Duration.ofSeconds(Long.parseLong(options.get("duration-s"))));
+        }
+        if (options.containsKey("ramp-up-s")) {
+            builder.rampUp(Duration.ofSeconds(Long.parseLong(options.get("ramp-up-s"))));
+        }
+        if (options.containsKey("warm-up-s")) {
+            builder.warmUp(Duration.ofSeconds(Long.parseLong(options.get("warm-up-s"))));
+        }
+        if (options.containsKey("think-time-ms")) {
+            builder.thinkTime(Duration.ofMillis(Long.parseLong(options.get("think-time-ms"))));
+        }
+        return builder.build();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + name + " is required unless --target or --external-apps is given");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,122 @@
+package com.microsoft.migration.assets.loadtest;
+
+import com.microsoft.migration.assets.loadtest.http.HttpDriver;
+import com.microsoft.migration.assets.loadtest.metrics.LatencyRecorder;
+import com.microsoft.migration.assets.loadtest.metrics.Metrics;
+import com.microsoft.migration.assets.loadtest.scenario.KeyPool;
+import com.microsoft.migration.assets.loadtest.scenario.Operation;
+import com.microsoft.migration.assets.loadtest.scenario.Operations;
+import com.microsoft.migration.assets.loadtest.scenario.SampleImages;
+import com.microsoft.migration.assets.loadtest.scenario.Scenario;
+import com.microsoft.migration.assets.loadtest.scenario.ScenarioContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs a scenario's virtual users against the web module and records the latency of every operation
+ */
+public class LoadTestRunner {
+
+    private final Scenario scenario;
+    private final HttpDriver http;
+    private final Metrics metrics;
+    private final KeyPool keys = new KeyPool();
+    private final SampleImages images = new SampleImages();
+    private final AtomicLong uploadCounter = new AtomicLong();
+
+    public LoadTestRunner(Scenario scenario, HttpDriver http, Metrics metrics) {
+        this.scenario = scenario;
+        this.http = http;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Run the scenario to the end and return the length of the recorded period in seconds
+     */
+    public double run() throws InterruptedException {
+        return run((recordFrom, recordUntil) -> { });
+    }
+
+    /**
+     * Run the scenario, first passing the recorded period (in {@link System#nanoTime()} terms) to the given
+     * listener, so measurements taken outside the runner can keep to the same period
+     */
+    public double run(BiConsumer<Long, Long> recordingWindow) throws InterruptedException {
+        // Learn the keys already stored, so views and deletes have something to work on from the start
+        try {
+            Operations.list().execute(newContext(0));
+        } catch (Exception e) {
+            System.out.println("Initial listing failed: " + e.getMessage());
+        }
+
+        long start = System.nanoTime();
+        long recordFrom = start + scenario.getWarmUp().toNanos();
+        long recordUntil = recordFrom + scenario.getDuration().toNanos();
+        long rampStep = scenario.getRampUp().toNanos() / scenario.getUsers();
+        recordingWindow.accept(recordFrom, recordUntil);
+
+        List<Thread> users = new ArrayList<>(scenario.getUsers());
+        for (int i = 0; i < scenario.getUsers(); i++) {
+            long startAt = start + i * rampStep;
+            ScenarioContext context = newContext(i + 1);
+            Thread user = new Thread(() -> runUser(context, startAt, recordFrom, recordUntil), "virtual-user-" + i);
+            user.setDaemon(true);
+            users.add(user);
+            user.start();
+        }
+        for (Thread user : users) {
+            user.join();
+        }
+        return (recordUntil - recordFrom) / 1e9;
+    }
+
+    private void runUser(ScenarioContext context, long startAt, long recordFrom, long recordUntil) {
+        try {
+            sleepUntil(startAt);
+            while (System.nanoTime() < recordUntil) {
+                Operation operation = scenario.next(context.getRandom());
+                long started = System.nanoTime();
+                boolean performed;
+                boolean failed = false;
+                try {
+                    performed = operation.execute(context);
+                } catch (Exception e) {
+                    performed = true;
+                    failed = true;
+                }
+                long finished = System.nanoTime();
+
+                if (performed && started >= recordFrom && finished <= recordUntil) {
+                    LatencyRecorder recorder = metrics.recorder(operation.getName());
+                    if (failed) {
+                        recorder.recordError();
+                    } else {
+                        recorder.record(TimeUnit.NANOSECONDS.toMicros(finished - started));
+                    }
+                }
+
+                if (!scenario.getThinkTime().isZero()) {
+                    Thread.sleep(scenario.getThinkTime().toMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ScenarioContext newContext(int user) {
+        return new ScenarioContext(http, keys, images, uploadCounter, new Random(31L * user + System.nanoTime()));
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.microsoft.migration.assets.loadtest;
+
+import com.microsoft.migration.assets.loadtest.metrics.LatencyRecorder;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Prints the results of a run as a table, one row per operation, latencies in milliseconds
+ */
+public class Report {
+
+    private static final String ROW = "%-16s %9s %7s %9s %9s %9s %9s %9s%n";
+
+    private Report() {
+    }
+
+    public static void print(PrintStream out, String scenario, double seconds, List<LatencyRecorder.Summary> summaries,
+                             Integer thumbnailsPending) {
+        out.println();
+        out.printf("Scenario %s, %.0f s recorded%n", scenario, seconds);
+        out.printf(ROW, "operation", "count", "errors", "ops/s", "mean", "p50", "p99", "max");
+        for (LatencyRecorder.Summary summary : summaries) {
+            out.printf(ROW, summary.getName(), summary.getCount(), summary.getErrors(),
+                    String.format("%.1f", summary.getThroughput()),
+                    millis(summary.getMean()), millis(summary.getP50()), millis(summary.getP99()), millis(summary.getMax()));
+        }
+        if (thumbnailsPending != null) {
+            out.printf("Thumbnails still pending at the end: %d%n", thumbnailsPending);
+        } else {
+            out.println("Thumbnail lag is only measured with the stand-in S3 server");
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.1f", micros / 1000.0);
+    }
+}
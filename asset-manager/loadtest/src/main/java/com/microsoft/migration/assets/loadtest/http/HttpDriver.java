@@ -0,0 +1,106 @@
+package com.microsoft.migration.assets.loadtest.http;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Minimal HTTP client for driving the web module. Redirects are not followed, since the web module answers
+ * form posts with a redirect whose target tells success from failure.
+ */
+public class HttpDriver {
+
+    private final String baseUrl;
+    private final int timeoutMillis;
+
+    public HttpDriver(String baseUrl, int timeoutMillis) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Response get(String path) throws IOException {
+        HttpURLConnection connection = open(path, "GET");
+        return read(connection);
+    }
+
+    public Response post(String path) throws IOException {
+        HttpURLConnection connection = open(path, "POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(0);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        connection.getOutputStream().close();
+        return read(connection);
+    }
+
+    /**
+     * Post a single file as multipart/form-data
+     */
+    public Response postFile(String path, String field, String filename, String contentType, byte[] content)
+            throws IOException {
+        String boundary = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = open(path, "POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(head.length + content.length + tail.length);
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(head);
+            out.write(content);
+            out.write(tail);
+        }
+        return read(connection);
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        return connection;
+    }
+
+    private static Response read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        String location = connection.getHeaderField("Location");
+        // Read error bodies too, so the connection can be reused
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] body = new byte[0];
+        if (in != null) {
+            try (InputStream stream = in) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                body = out.toByteArray();
+            }
+        }
+        return new Response(status, location, body);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Response {
+        private final int status;
+        private final String location;
+        private final byte[] body;
+
+        public String getText() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
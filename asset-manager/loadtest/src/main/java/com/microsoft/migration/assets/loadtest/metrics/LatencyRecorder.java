@@ -0,0 +1,79 @@
+package com.microsoft.migration.assets.loadtest.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Collects the latencies of one operation, in microseconds, and summarizes them once the run is over.
+ *
+ * Every sample is kept, so percentiles are exact; a run of a few million operations takes a few tens of MB.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void record(long micros) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = micros;
+    }
+
+    public synchronized void recordError() {
+        errors++;
+    }
+
+    public synchronized Summary summarize(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long sample : sorted) {
+            total += sample;
+        }
+        return new Summary(name, count, errors,
+                elapsedSeconds > 0 ? count / elapsedSeconds : 0,
+                count > 0 ? total / count : 0,
+                percentile(sorted, 50), percentile(sorted, 99),
+                count > 0 ? sorted[count - 1] : 0);
+    }
+
+    /**
+     * Nearest-rank percentile of sorted samples
+     */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * Throughput and latency of one operation over a run; latencies in microseconds
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Summary {
+        private final String name;
+        private final long count;
+        private final long errors;
+        private final double throughput;
+        private final long mean;
+        private final long p50;
+        private final long p99;
+        private final long max;
+    }
+}
@@ -0,0 +1,27 @@
+package com.microsoft.migration.assets.loadtest.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency recorders of a run, one per operation name
+ */
+public class Metrics {
+
+    private final Map<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+
+    public LatencyRecorder recorder(String name) {
+        return recorders.computeIfAbsent(name, LatencyRecorder::new);
+    }
+
+    public List<LatencyRecorder.Summary> summarize(double elapsedSeconds) {
+        List<LatencyRecorder.Summary> summaries = new ArrayList<>();
+        for (LatencyRecorder recorder : recorders.values()) {
+            summaries.add(recorder.summarize(elapsedSeconds));
+        }
+        summaries.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return summaries;
+    }
+}
@@ -0,0 +1,92 @@
+package com.microsoft.migration.assets.loadtest.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long thumbnails take to appear after their originals were stored.
+ *
+ * The mock S3 server reports every object written to it; the lag of a thumbnail is the time between the web
+ * module writing the original and the worker writing the thumbnail, so it covers queueing, download, rendering
+ * and upload.
+ *
+ * Only originals stored within the recorded period count, as with operation latencies; their thumbnails are
+ * waited for even after it ends, so that slow thumbnails are not left out of the distribution.
+ */
+public class ThumbnailLagTracker {
+
+    private static final String THUMBNAIL_SUFFIX = "_thumbnail";
+
+    private final LatencyRecorder recorder;
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    // Nothing is recorded until the period is known
+    private volatile long recordFrom = Long.MAX_VALUE;
+    private volatile long recordUntil = Long.MIN_VALUE;
+
+    public ThumbnailLagTracker(LatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Set the recorded period, in {@link System#nanoTime()} terms
+     */
+    public void recordBetween(long recordFrom, long recordUntil) {
+        this.recordFrom = recordFrom;
+        this.recordUntil = recordUntil;
+    }
+
+    /**
+     * Called for every object written to storage
+     */
+    public void objectStored(String key) {
+        long now = System.nanoTime();
+        String original = originalKeyOf(key);
+        if (original == null) {
+            if (now >= recordFrom && now <= recordUntil) {
+                pending.put(key, now);
+            }
+            return;
+        }
+        Long storedAt = pending.remove(original);
+        if (storedAt != null) {
+            recorder.record(TimeUnit.NANOSECONDS.toMicros(now - storedAt));
+        }
+    }
+
+    /**
+     * Called for every object deleted from storage; originals deleted before their thumbnail are not waited for
+     */
+    public void objectDeleted(String key) {
+        pending.remove(key);
+    }
+
+    /**
+     * Originals stored within the recorded period whose thumbnail has not been written yet
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Key of the original a thumbnail key belongs to, or null if the key is not a thumbnail's. Thumbnails
+     * encoded in another format than their original have that format's extension appended.
+     */
+    public static String originalKeyOf(String key) {
+        String original = stripThumbnailSuffix(key);
+        if (original == null && (key.endsWith(".jpg") || key.endsWith(".png"))) {
+            original = stripThumbnailSuffix(key.substring(0, key.length() - 4));
+        }
+        return original;
+    }
+
+    private static String stripThumbnailSuffix(String key) {
+        int dotIndex = key.lastIndexOf('.');
+        String base = dotIndex > 0 ? key.substring(0, dotIndex) : key;
+        if (!base.endsWith(THUMBNAIL_SUFFIX)) {
+            return null;
+        }
+        return base.substring(0, base.length() - THUMBNAIL_SUFFIX.length())
+                + (dotIndex > 0 ? key.substring(dotIndex) : "");
+    }
+}
@@ -0,0 +1,59 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Object keys known to exist, learned from listings and shared by all virtual users, so views and deletes
+ * hit real objects
+ */
+public class KeyPool {
+
+    private final List<String> keys = new ArrayList<>();
+    private final Set<String> members = new HashSet<>();
+
+    public synchronized void addAll(Collection<String> found) {
+        for (String key : found) {
+            if (members.add(key)) {
+                keys.add(key);
+            }
+        }
+    }
+
+    /**
+     * A random known key, or null if none is known yet
+     */
+    public synchronized String pick(Random random) {
+        return keys.isEmpty() ? null : keys.get(random.nextInt(keys.size()));
+    }
+
+    /**
+     * Remove and return a random known key, so no other user picks it while it is being deleted
+     */
+    public synchronized String take(Random random) {
+        if (keys.isEmpty()) {
+            return null;
+        }
+        int index = random.nextInt(keys.size());
+        // Swap with the last key for a constant-time removal
+        String key = keys.get(index);
+        keys.set(index, keys.get(keys.size() - 1));
+        keys.remove(keys.size() - 1);
+        members.remove(key);
+        return key;
+    }
+
+    public synchronized void remove(String key) {
+        if (members.remove(key)) {
+            keys.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return keys.size();
+    }
+}
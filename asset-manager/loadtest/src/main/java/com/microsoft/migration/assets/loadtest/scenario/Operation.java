@@ -0,0 +1,15 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+/**
+ * One user action against the web module. Its latency is recorded under its name; it fails by throwing.
+ */
+public interface Operation {
+
+    String getName();
+
+    /**
+     * Perform the action. Returns false if there was nothing to act on (such as no known key to view yet),
+     * in which case nothing is recorded.
+     */
+    boolean execute(ScenarioContext context) throws Exception;
+}
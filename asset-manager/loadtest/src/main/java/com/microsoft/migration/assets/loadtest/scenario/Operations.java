@@ -0,0 +1,138 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+import com.microsoft.migration.assets.loadtest.http.HttpDriver;
+import com.microsoft.migration.assets.loadtest.metrics.ThumbnailLagTracker;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The operations scenarios are built from, each mirroring what the web UI does
+ */
+public final class Operations {
+
+    private static final String STORAGE_PATH = "/storage";
+    private static final Pattern DATA_KEY = Pattern.compile("data-key=\"([^\"]+)\"");
+
+    private Operations() {
+    }
+
+    /**
+     * Upload a JPEG of about the given size through the upload form
+     */
+    public static Operation upload(int approximateBytes) {
+        return new Named("upload") {
+            @Override
+            public boolean execute(ScenarioContext context) throws IOException {
+                String filename = "load-" + context.getUploadCounter().incrementAndGet() + ".jpg";
+                HttpDriver.Response response = context.getHttp().postFile(STORAGE_PATH + "/upload", "file", filename,
+                        "image/jpeg", context.getImages().jpeg(approximateBytes));
+                // Success redirects to the list, failure back to the form
+                if (response.getStatus() != 302 || response.getLocation() == null
+                        || response.getLocation().endsWith("/upload")) {
+                    throw new IOException("Upload failed with status " + response.getStatus() + " to " + response.getLocation());
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Load the first page of the list, learning the keys on it
+     */
+    public static Operation list() {
+        return new Named("list") {
+            @Override
+            public boolean execute(ScenarioContext context) throws IOException {
+                HttpDriver.Response response = expect(context.getHttp().get(STORAGE_PATH), 200);
+                context.getKeys().addAll(parseKeys(response.getText()));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Download a known image, as the view page does
+     */
+    public static Operation view() {
+        return new Named("view") {
+            @Override
+            public boolean execute(ScenarioContext context) throws IOException {
+                String key = context.getKeys().pick(context.getRandom());
+                if (key == null) {
+                    return false;
+                }
+                HttpDriver.Response response = context.getHttp().get(STORAGE_PATH + "/view/" + encode(key));
+                if (response.getStatus() == 404) {
+                    // Deleted by another user since it was listed
+                    context.getKeys().remove(key);
+                }
+                expect(response, 200);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Delete a known image and its thumbnail
+     */
+    public static Operation delete() {
+        return new Named("delete") {
+            @Override
+            public boolean execute(ScenarioContext context) throws IOException {
+                String key = context.getKeys().take(context.getRandom());
+                if (key == null) {
+                    return false;
+                }
+                // Redirects to the list either way; failures only show as a flash message
+                expect(context.getHttp().post(STORAGE_PATH + "/delete/" + encode(key)), 302);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Keys of the originals on a list page; thumbnails are listed too when the storage does not pair them
+     */
+    static List<String> parseKeys(String html) {
+        List<String> keys = new ArrayList<>();
+        Matcher matcher = DATA_KEY.matcher(html);
+        while (matcher.find()) {
+            String key = matcher.group(1).replace("&quot;", "\"").replace("&#39;", "'")
+                    .replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+            if (ThumbnailLagTracker.originalKeyOf(key) == null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static HttpDriver.Response expect(HttpDriver.Response response, int status) throws IOException {
+        if (response.getStatus() != status) {
+            throw new IOException("Expected status " + status + " but got " + response.getStatus());
+        }
+        return response;
+    }
+
+    private static String encode(String key) throws UnsupportedEncodingException {
+        return URLEncoder.encode(key, "UTF-8").replace("+", "%20");
+    }
+
+    private abstract static class Named implements Operation {
+        private final String name;
+
+        Named(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
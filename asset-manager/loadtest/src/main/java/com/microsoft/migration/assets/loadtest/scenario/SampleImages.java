@@ -0,0 +1,61 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JPEG images of roughly a requested size, generated once per size and reused for every upload
+ */
+public class SampleImages {
+
+    // Noisy photo-like content compresses to about this many bytes per pixel at the quality used below
+    private static final double BYTES_PER_PIXEL = 0.6;
+
+    private final Map<Integer, byte[]> images = new ConcurrentHashMap<>();
+
+    public byte[] jpeg(int approximateBytes) {
+        return images.computeIfAbsent(approximateBytes, SampleImages::generate);
+    }
+
+    private static byte[] generate(int approximateBytes) {
+        // 4:3 frame with enough pixels for the requested size
+        int height = Math.max(16, (int) Math.sqrt(approximateBytes / BYTES_PER_PIXEL * 3 / 4));
+        int width = height * 4 / 3;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(approximateBytes);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Gradient plus noise, so the encoder cannot squeeze it much
+                int r = (x * 255 / width + random.nextInt(64)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(64)) & 0xFF;
+                int b = random.nextInt(256);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.85f);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,148 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A load profile: how many virtual users, for how long, and the mix of operations they perform.
+ *
+ * <pre>
+ * Scenario.named("mixed")
+ *         .users(16).rampUp(Duration.ofSeconds(10)).warmUp(Duration.ofSeconds(15)).duration(Duration.ofMinutes(2))
+ *         .thinkTime(Duration.ofMillis(200))
+ *         .mix(Operations.upload(256 * 1024), 15)
+ *         .mix(Operations.list(), 40)
+ *         .mix(Operations.view(), 40)
+ *         .mix(Operations.delete(), 5)
+ *         .build();
+ * </pre>
+ *
+ * Each user repeatedly picks an operation at random in proportion to its weight, runs it and pauses for the
+ * think time. Users start evenly spread over the ramp-up; nothing is recorded until the warm-up has passed.
+ */
+@Getter
+public class Scenario {
+
+    private final String name;
+    private final int users;
+    private final Duration rampUp;
+    private final Duration warmUp;
+    private final Duration duration;
+    private final Duration thinkTime;
+    private final List<Operation> operations;
+    @Getter(AccessLevel.NONE)
+    private final int[] cumulativeWeights;
+
+    private Scenario(Builder builder) {
+        this.name = builder.name;
+        this.users = builder.users;
+        this.rampUp = builder.rampUp;
+        this.warmUp = builder.warmUp;
+        this.duration = builder.duration;
+        this.thinkTime = builder.thinkTime;
+        this.operations = Collections.unmodifiableList(new ArrayList<>(builder.operations));
+        this.cumulativeWeights = new int[builder.weights.size()];
+        int total = 0;
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            total += builder.weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static Builder named(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * Pick the next operation in proportion to the weights of the mix
+     */
+    public Operation next(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations.get(i);
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    /**
+     * A builder with this scenario's settings, for overriding some of them from the command line
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder(name)
+                .users(users).rampUp(rampUp).warmUp(warmUp).duration(duration).thinkTime(thinkTime);
+        for (int i = 0; i < operations.size(); i++) {
+            builder.mix(operations.get(i), cumulativeWeights[i] - (i > 0 ? cumulativeWeights[i - 1] : 0));
+        }
+        return builder;
+    }
+
+    public static class Builder {
+        private final String name;
+        private int users = 1;
+        private Duration rampUp = Duration.ZERO;
+        private Duration warmUp = Duration.ZERO;
+        private Duration duration = Duration.ofMinutes(1);
+        private Duration thinkTime = Duration.ZERO;
+        private final List<Operation> operations = new ArrayList<>();
+        private final List<Integer> weights = new ArrayList<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder users(int users) {
+            this.users = users;
+            return this;
+        }
+
+        public Builder rampUp(Duration rampUp) {
+            this.rampUp = rampUp;
+            return this;
+        }
+
+        public Builder warmUp(Duration warmUp) {
+            this.warmUp = warmUp;
+            return this;
+        }
+
+        /**
+         * How long to record for, after the warm-up
+         */
+        public Builder duration(Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder thinkTime(Duration thinkTime) {
+            this.thinkTime = thinkTime;
+            return this;
+        }
+
+        public Builder mix(Operation operation, int weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight of " + operation.getName() + " must be positive");
+            }
+            operations.add(operation);
+            weights.add(weight);
+            return this;
+        }
+
+        public Scenario build() {
+            if (operations.isEmpty()) {
+                throw new IllegalStateException("Scenario " + name + " has no operations");
+            }
+            if (users < 1) {
+                throw new IllegalStateException("Scenario " + name + " needs at least one user");
+            }
+            return new Scenario(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+import com.microsoft.migration.assets.loadtest.http.HttpDriver;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What an operation runs against: the web module, the keys known so far and the sample images.
+ * Each virtual user has its own context, sharing the pool and images with the others.
+ */
+@Getter
+@AllArgsConstructor
+public class ScenarioContext {
+    private final HttpDriver http;
+    private final KeyPool keys;
+    private final SampleImages images;
+    private final AtomicLong uploadCounter;
+    private final Random random;
+}
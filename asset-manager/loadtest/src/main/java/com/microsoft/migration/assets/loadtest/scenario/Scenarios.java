@@ -0,0 +1,64 @@
+package com.microsoft.migration.assets.loadtest.scenario;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Built-in scenarios, selected by name on the command line
+ */
+public final class Scenarios {
+
+    private static final int KB = 1024;
+
+    private static final Map<String, Scenario> SCENARIOS = new LinkedHashMap<>();
+
+    static {
+        // Typical day: mostly browsing, some uploads of phone-sized photos, few deletes
+        register(Scenario.named("mixed")
+                .users(16).rampUp(Duration.ofSeconds(10)).warmUp(Duration.ofSeconds(15)).duration(Duration.ofMinutes(2))
+                .thinkTime(Duration.ofMillis(200))
+                .mix(Operations.upload(512 * KB), 15)
+                .mix(Operations.list(), 40)
+                .mix(Operations.view(), 40)
+                .mix(Operations.delete(), 5)
+                .build());
+
+        // Everyone uploading at once without pause, to find the point where thumbnail lag starts growing
+        register(Scenario.named("upload-burst")
+                .users(32).rampUp(Duration.ofSeconds(5)).warmUp(Duration.ofSeconds(5)).duration(Duration.ofMinutes(1))
+                .mix(Operations.upload(512 * KB), 1)
+                .build());
+
+        // Read-only traffic against whatever is stored, with a few uploads to keep the list moving
+        register(Scenario.named("browse")
+                .users(64).rampUp(Duration.ofSeconds(10)).warmUp(Duration.ofSeconds(10)).duration(Duration.ofMinutes(2))
+                .thinkTime(Duration.ofMillis(100))
+                .mix(Operations.upload(128 * KB), 2)
+                .mix(Operations.list(), 48)
+                .mix(Operations.view(), 50)
+                .build());
+
+        // Large originals, which stress transfer and decoding more than request handling
+        register(Scenario.named("large-uploads")
+                .users(8).rampUp(Duration.ofSeconds(5)).warmUp(Duration.ofSeconds(10)).duration(Duration.ofMinutes(2))
+                .mix(Operations.upload(8 * KB * KB), 3)
+                .mix(Operations.view(), 1)
+                .build());
+    }
+
+    private Scenarios() {
+    }
+
+    private static void register(Scenario scenario) {
+        SCENARIOS.put(scenario.getName(), scenario);
+    }
+
+    public static Scenario get(String name) {
+        Scenario scenario = SCENARIOS.get(name);
+        if (scenario == null) {
+            throw new IllegalArgumentException("Unknown scenario " + name + ", expected one of " + SCENARIOS.keySet());
+        }
+        return scenario;
+    }
+}
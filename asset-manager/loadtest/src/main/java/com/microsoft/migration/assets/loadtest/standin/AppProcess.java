@@ -0,0 +1,69 @@
+package com.microsoft.migration.assets.loadtest.standin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One of the applications under test, run from its jar in a child JVM with its output sent to a log file
+ */
+public class AppProcess implements AutoCloseable {
+
+    private final String name;
+    private final Path jar;
+    private final List<String> arguments;
+    private final Path logFile;
+    private Process process;
+
+    public AppProcess(String name, Path jar, List<String> arguments, Path logDirectory) {
+        this.name = name;
+        this.jar = jar;
+        this.arguments = arguments;
+        this.logFile = logDirectory.resolve(name + ".log");
+    }
+
+    public void start() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-jar");
+        command.add(jar.toAbsolutePath().toString());
+        command.addAll(arguments);
+
+        File log = logFile.toFile();
+        log.getParentFile().mkdirs();
+        process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    public boolean isAlive() {
+        return process != null && process.isAlive();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Path getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Stop the application the way a deployment would, giving it time to shut down gracefully
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+    }
+}
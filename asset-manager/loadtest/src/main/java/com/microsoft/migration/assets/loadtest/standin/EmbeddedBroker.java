@@ -0,0 +1,42 @@
+package com.microsoft.migration.assets.loadtest.standin;
+
+import org.apache.qpid.server.SystemLauncher;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory AMQP 0-9-1 broker (Qpid Broker-J) standing in for RabbitMQ. Accepts guest/guest on the
+ * virtual host "default"; queues are declared by the applications as usual.
+ */
+public class EmbeddedBroker implements AutoCloseable {
+
+    public static final String VIRTUAL_HOST = "default";
+
+    private final int port;
+    private final SystemLauncher launcher = new SystemLauncher();
+
+    public EmbeddedBroker(int port) {
+        this.port = port;
+    }
+
+    public void start() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation",
+                EmbeddedBroker.class.getClassLoader().getResource("qpid-config.json").toExternalForm());
+        attributes.put("startupLoggedToSystemOut", false);
+        attributes.put("context", Collections.singletonMap("qpid.amqp_port", String.valueOf(port)));
+        launcher.startup(attributes);
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+}
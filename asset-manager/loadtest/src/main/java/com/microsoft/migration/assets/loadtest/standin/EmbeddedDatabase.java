@@ -0,0 +1,40 @@
+package com.microsoft.migration.assets.loadtest.standin;
+
+import org.h2.tools.Server;
+
+import java.sql.SQLException;
+
+/**
+ * In-memory H2 database in PostgreSQL mode standing in for PostgreSQL, served over TCP so the web and worker
+ * processes share it. Hibernate creates the schema as usual with {@code ddl-auto=update}.
+ *
+ * Queries that use PostgreSQL-only syntax, such as the reconciler's {@code COLLATE "C"} ordering, do not run
+ * here; the load test disables the features that need them.
+ */
+public class EmbeddedDatabase implements AutoCloseable {
+
+    private static final String DATABASE = "assets_manager";
+
+    private final int port;
+    private Server server;
+
+    public EmbeddedDatabase(int port) {
+        this.port = port;
+    }
+
+    public void start() throws SQLException {
+        server = Server.createTcpServer("-tcpPort", String.valueOf(port), "-ifNotExists").start();
+    }
+
+    public String getJdbcUrl() {
+        return "jdbc:h2:tcp://localhost:" + port + "/mem:" + DATABASE
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
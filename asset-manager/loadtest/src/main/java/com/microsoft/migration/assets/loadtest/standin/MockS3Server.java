@@ -0,0 +1,371 @@
+package com.microsoft.migration.assets.loadtest.standin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory stand-in for S3, covering the calls the web and worker modules make: PutObject, GetObject (with
+ * ranges), HeadObject, DeleteObject, DeleteObjects and ListObjectsV2. Buckets are created on first use and
+ * addressed path-style, so clients need {@code aws.s3.endpoint} set to this server.
+ *
+ * Request signatures are not checked.
+ */
+public class MockS3Server implements AutoCloseable {
+
+    private static final Pattern DELETE_KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+
+    private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Consumer<String> onStored;
+    private final Consumer<String> onDeleted;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * @param onStored  called with the key of every object written
+     * @param onDeleted called with the key of every object deleted
+     */
+    public MockS3Server(int port, Consumer<String> onStored, Consumer<String> onDeleted) throws IOException {
+        this.onStored = onStored;
+        this.onDeleted = onDeleted;
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-s3");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getObjectCount() {
+        int count = 0;
+        for (NavigableMap<String, StoredObject> bucket : buckets.values()) {
+            count += bucket.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            int slash = path.indexOf('/', 1);
+            String bucketName = decode(slash > 0 ? path.substring(1, slash) : path.substring(1));
+            String key = slash > 0 && slash < path.length() - 1 ? decode(path.substring(slash + 1)) : null;
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            NavigableMap<String, StoredObject> bucket = buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+            String method = exchange.getRequestMethod();
+
+            if (key == null) {
+                if ("GET".equals(method)) {
+                    listObjects(exchange, bucketName, bucket, query);
+                } else if ("POST".equals(method) && query.containsKey("delete")) {
+                    deleteObjects(exchange, bucket);
+                } else {
+                    // CreateBucket, HeadBucket and anything else on the bucket itself
+                    exchange.sendResponseHeaders(200, -1);
+                }
+            } else if ("PUT".equals(method)) {
+                putObject(exchange, bucket, key);
+            } else if ("GET".equals(method) || "HEAD".equals(method)) {
+                getObject(exchange, bucket.get(key), "HEAD".equals(method));
+            } else if ("DELETE".equals(method)) {
+                if (bucket.remove(key) != null) {
+                    onDeleted.accept(key);
+                }
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        } catch (RuntimeException e) {
+            sendXml(exchange, 500, "<Error><Code>InternalError</Code><Message>" + escape(String.valueOf(e.getMessage()))
+                    + "</Message></Error>");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void putObject(HttpExchange exchange, NavigableMap<String, StoredObject> bucket, String key) throws IOException {
+        byte[] body = readAll(exchange.getRequestBody());
+        String contentSha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        if ((contentSha != null && contentSha.startsWith("STREAMING-"))
+                || (contentEncoding != null && contentEncoding.contains("aws-chunked"))) {
+            body = decodeAwsChunked(body);
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        StoredObject object = new StoredObject(body, contentType != null ? contentType : "application/octet-stream",
+                Instant.now(), md5(body));
+        bucket.put(key, object);
+        onStored.accept(key);
+
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void getObject(HttpExchange exchange, StoredObject object, boolean headOnly) throws IOException {
+        if (object == null) {
+            if (headOnly) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                sendXml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>The specified key does not exist.</Message></Error>");
+            }
+            return;
+        }
+
+        int from = 0;
+        int to = object.data.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        boolean partial = range != null && range.startsWith("bytes=") && object.data.length > 0;
+        if (partial) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            try {
+                String first = bounds[0].trim();
+                String last = bounds.length > 1 ? bounds[1].trim() : "";
+                if (first.isEmpty()) {
+                    // Suffix range: the last N bytes
+                    from = Math.max(0, object.data.length - Integer.parseInt(last));
+                } else {
+                    from = Integer.parseInt(first);
+                    if (!last.isEmpty()) {
+                        to = Math.min(to, Integer.parseInt(last));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Malformed, or several ranges, which S3 does not support either
+                from = to + 1;
+            }
+            if (from > to) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + object.data.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + object.data.length);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", object.contentType);
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag + "\"");
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified.atOffset(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (headOnly) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        int length = to - from + 1;
+        exchange.sendResponseHeaders(partial ? 206 : 200, length == 0 ? -1 : length);
+        if (length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(object.data, from, length);
+            }
+        }
+    }
+
+    private void listObjects(HttpExchange exchange, String bucketName, NavigableMap<String, StoredObject> bucket,
+                             Map<String, String> query) throws IOException {
+        String prefix = query.getOrDefault("prefix", "");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        String after = query.get("continuation-token");
+        if (after == null) {
+            after = query.get("start-after");
+        }
+
+        NavigableMap<String, StoredObject> candidates = after != null && !after.isEmpty()
+                ? bucket.tailMap(after, false) : bucket;
+        StringBuilder contents = new StringBuilder();
+        int keyCount = 0;
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                if (entry.getKey().compareTo(prefix) > 0 && !prefix.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            if (keyCount == maxKeys) {
+                truncated = true;
+                break;
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents><Key>").append(escape(entry.getKey())).append("</Key>")
+                    .append("<LastModified>").append(DateTimeFormatter.ISO_INSTANT.format(object.lastModified)).append("</LastModified>")
+                    .append("<ETag>&quot;").append(object.etag).append("&quot;</ETag>")
+                    .append("<Size>").append(object.data.length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+            keyCount++;
+            lastKey = entry.getKey();
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>").append(escape(bucketName)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(keyCount).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(escape(lastKey)).append("</NextContinuationToken>");
+        }
+        xml.append(contents).append("</ListBucketResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    private void deleteObjects(HttpExchange exchange, NavigableMap<String, StoredObject> bucket) throws IOException {
+        String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        Matcher matcher = DELETE_KEY.matcher(body);
+        while (matcher.find()) {
+            String key = unescape(matcher.group(1));
+            if (bucket.remove(key) != null) {
+                onDeleted.accept(key);
+            }
+        }
+        // Deleting a missing key is not an error in S3, so there are never errors to report
+        sendXml(exchange, 200, "<DeleteResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"></DeleteResult>");
+    }
+
+    /**
+     * Strip the framing of an aws-chunked body, which the SDK uses for signed uploads over plain HTTP:
+     * chunks of {@code <hex size>;chunk-signature=<signature>\r\n<data>\r\n}, ending with a chunk of size 0.
+     */
+    static byte[] decodeAwsChunked(byte[] body) {
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(body.length);
+        int position = 0;
+        while (position < body.length) {
+            int lineEnd = indexOfCrLf(body, position);
+            if (lineEnd < 0) {
+                break;
+            }
+            String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int semicolon = header.indexOf(';');
+            int size = Integer.parseInt((semicolon >= 0 ? header.substring(0, semicolon) : header).trim(), 16);
+            if (size == 0) {
+                break; // trailing headers, if any, follow the last chunk
+            }
+            int dataStart = lineEnd + 2;
+            decoded.write(body, dataStart, Math.min(size, body.length - dataStart));
+            position = dataStart + size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrLf(byte[] buffer, int from) {
+        for (int i = from; i < buffer.length - 1; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                query.put(decode(parameter), "");
+            } else {
+                query.put(decode(parameter.substring(0, equals)), decode(parameter.substring(equals + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) throws UnsupportedEncodingException {
+        return URLDecoder.decode(value, "UTF-8");
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(data)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\"", "&quot;").replace("'", "&apos;");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static final class StoredObject {
+        private final byte[] data;
+        private final String contentType;
+        private final Instant lastModified;
+        private final String etag;
+
+        private StoredObject(byte[] data, String contentType, Instant lastModified, String etag) {
+            this.data = data;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+    }
+}
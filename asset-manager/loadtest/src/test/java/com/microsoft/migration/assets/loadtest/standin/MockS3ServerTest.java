@@ -0,0 +1,116 @@
+package com.microsoft.migration.assets.loadtest.standin;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MockS3ServerTest {
+
+    @Test
+    void decodeAwsChunkedStripsChunkFraming() {
+        // Arrange
+        byte[] body = ("5;chunk-signature=aaaa\r\nhello\r\n"
+                + "6;chunk-signature=bbbb\r\n world\r\n"
+                + "0;chunk-signature=cccc\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        // Act
+        byte[] decoded = MockS3Server.decodeAwsChunked(body);
+
+        // Assert
+        assertEquals("hello world", new String(decoded, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void storedObjectCanBeReadBackByRange() throws Exception {
+        // Arrange
+        List<String> stored = new ArrayList<>();
+        try (MockS3Server server = new MockS3Server(0, stored::add, key -> { })) {
+            server.start();
+            HttpURLConnection put = (HttpURLConnection) new URL(server.getEndpoint() + "/bucket/image.jpg").openConnection();
+            put.setRequestMethod("PUT");
+            put.setDoOutput(true);
+            try (OutputStream out = put.getOutputStream()) {
+                out.write("0123456789".getBytes(StandardCharsets.US_ASCII));
+            }
+            assertEquals(200, put.getResponseCode());
+
+            // Act
+            HttpURLConnection get = (HttpURLConnection) new URL(server.getEndpoint() + "/bucket/image.jpg").openConnection();
+            get.setRequestProperty("Range", "bytes=2-5");
+
+            // Assert
+            assertEquals(206, get.getResponseCode());
+            assertEquals("2345", read(get.getInputStream()));
+            assertEquals(1, stored.size());
+            assertEquals("image.jpg", stored.get(0));
+        }
+    }
+
+    @Test
+    void suffixRangeReturnsTheLastBytes() throws Exception {
+        // Arrange
+        try (MockS3Server server = new MockS3Server(0, key -> { }, key -> { })) {
+            server.start();
+            put(server, "image.jpg", "0123456789");
+
+            // Act
+            HttpURLConnection get = (HttpURLConnection) new URL(server.getEndpoint() + "/bucket/image.jpg").openConnection();
+            get.setRequestProperty("Range", "bytes=-3");
+
+            // Assert
+            assertEquals(206, get.getResponseCode());
+            assertEquals("bytes 7-9/10", get.getHeaderField("Content-Range"));
+            assertEquals("789", read(get.getInputStream()));
+        }
+    }
+
+    @Test
+    void unsatisfiableOrMalformedRangeIsRejected() throws Exception {
+        // Arrange
+        try (MockS3Server server = new MockS3Server(0, key -> { }, key -> { })) {
+            server.start();
+            put(server, "image.jpg", "0123456789");
+
+            for (String range : new String[] {"bytes=-0", "bytes=20-", "bytes=0-1,4-5", "bytes=x-"}) {
+                // Act
+                HttpURLConnection get = (HttpURLConnection) new URL(server.getEndpoint() + "/bucket/image.jpg").openConnection();
+                get.setRequestProperty("Range", range);
+
+                // Assert
+                assertEquals(416, get.getResponseCode(), range);
+                assertEquals("bytes */10", get.getHeaderField("Content-Range"), range);
+            }
+        }
+    }
+
+    private static void put(MockS3Server server, String key, String content) throws Exception {
+        HttpURLConnection put = (HttpURLConnection) new URL(server.getEndpoint() + "/bucket/" + key).openConnection();
+        put.setRequestMethod("PUT");
+        put.setDoOutput(true);
+        try (OutputStream out = put.getOutputStream()) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        assertEquals(200, put.getResponseCode());
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.microsoft.migration.assets.config;
 
+import com.microsoft.migration.assets.model.ProcessingPriority;
 import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.QueueBuilder;
@@ -14,6 +15,15 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class RabbitConfig {
     public static final String IMAGE_PROCESSING_QUEUE = "image-processing";
+    // Bulk work such as thumbnail backfills, consumed separately so it cannot delay fresh uploads
+    public static final String IMAGE_PROCESSING_BULK_QUEUE = "image-processing.bulk";
+
+    /**
+     * Queue of the lane for the given priority
+     */
+    public static String queueFor(ProcessingPriority priority) {
+        return priority == ProcessingPriority.BULK ? IMAGE_PROCESSING_BULK_QUEUE : IMAGE_PROCESSING_QUEUE;
+    }
 
     @Bean
     public Queue imageProcessingQueue() {
@@ -21,6 +31,12 @@ public class RabbitConfig {
         .build();
     }
 
+    @Bean
+    public Queue imageProcessingBulkQueue() {
+        return QueueBuilder.durable(IMAGE_PROCESSING_BULK_QUEUE)
+        .build();
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
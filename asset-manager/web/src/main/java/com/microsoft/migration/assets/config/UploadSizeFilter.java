@@ -0,0 +1,49 @@
+package com.microsoft.migration.assets.config;
+
+import com.microsoft.migration.assets.constants.StorageConstants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Rejects single-image uploads that are too large from their Content-Length, before the multipart body is read.
+ *
+ * The multipart limits are sized for zip archives in batch uploads, so without this a single upload could be
+ * buffered up to those limits only to be refused by the controller's size check afterwards. Requests without
+ * a Content-Length are left to that check.
+ */
+@Component
+public class UploadSizeFilter extends OncePerRequestFilter {
+
+    // Room for the multipart boundaries, part headers and other form fields around the file
+    private static final long MULTIPART_OVERHEAD = 64 * 1024;
+
+    private static final String UPLOAD_PATH = "/" + StorageConstants.STORAGE_PATH + "/upload";
+
+    @Value("${storage.upload.max-object-size:10485760}")
+    private long maxObjectSize;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !(request.getContextPath() + UPLOAD_PATH).equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getContentLengthLong() > maxObjectSize + MULTIPART_OVERHEAD) {
+            response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                    "File exceeds the maximum size of " + (maxObjectSize / (1024 * 1024)) + "MB");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -84,6 +84,12 @@ public class WebMvcConfig extends WebMvcConfigurerAdapter {
             
             if (uri.contains("/upload")) {
                 return "FILE_UPLOAD";
+            } else if (uri.contains("/backfill")) {
+                return "THUMBNAIL_BACKFILL";
+            } else if (uri.contains("/reconcile")) {
+                return "STORAGE_RECONCILE";
+            } else if (uri.contains("/bulk-delete")) {
+                return "FILE_BULK_DELETE";
             } else if (uri.contains("/delete/")) {
                 return "FILE_DELETE";
             } else if (uri.contains("/view/")) {
@@ -0,0 +1,65 @@
+package com.microsoft.migration.assets.controller;
+
+import com.microsoft.migration.assets.constants.StorageConstants;
+import com.microsoft.migration.assets.model.BackfillJob;
+import com.microsoft.migration.assets.service.ThumbnailBackfillService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Start, pause, resume and follow thumbnail backfills
+ */
+@Controller
+@RequestMapping("/" + StorageConstants.STORAGE_PATH + "/backfill")
+@RequiredArgsConstructor
+public class BackfillController {
+
+    private final ThumbnailBackfillService backfillService;
+
+    @GetMapping
+    @ResponseBody
+    public List<BackfillJob> listJobs() {
+        return backfillService.listJobs();
+    }
+
+    @PostMapping
+    @ResponseBody
+    public ResponseEntity<BackfillJob> start(@RequestParam(required = false) Double rate) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(backfillService.start(rate));
+    }
+
+    @GetMapping("/{id}")
+    @ResponseBody
+    public ResponseEntity<BackfillJob> getJob(@PathVariable String id) {
+        return backfillService.findJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{id}/pause")
+    @ResponseBody
+    public ResponseEntity<BackfillJob> pause(@PathVariable String id) {
+        return ResponseEntity.ok(backfillService.pause(id));
+    }
+
+    @PostMapping("/{id}/resume")
+    @ResponseBody
+    public ResponseEntity<BackfillJob> resume(@PathVariable String id, @RequestParam(required = false) Double rate) {
+        return ResponseEntity.ok(backfillService.resume(id, rate));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<String> handleConflict(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleNotFound(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+}
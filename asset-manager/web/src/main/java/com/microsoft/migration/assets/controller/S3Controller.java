@@ -1,12 +1,20 @@
 package com.microsoft.migration.assets.controller;
 
 import com.microsoft.migration.assets.constants.StorageConstants;
+import com.microsoft.migration.assets.model.BatchUploadResult;
+import com.microsoft.migration.assets.model.BulkDeleteResult;
+import com.microsoft.migration.assets.model.LocalFile;
+import com.microsoft.migration.assets.model.ReconciliationReport;
 import com.microsoft.migration.assets.model.S3StorageItem;
+import com.microsoft.migration.assets.service.BatchUploadService;
+import com.microsoft.migration.assets.service.LocalFileTransferService;
+import com.microsoft.migration.assets.service.StorageReconciler;
 import com.microsoft.migration.assets.service.StorageService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,6 +22,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -25,11 +34,23 @@ import java.util.Optional;
 public class S3Controller {
 
     private final StorageService storageService;
+    private final LocalFileTransferService localFileTransferService;
+    private final BatchUploadService batchUploadService;
+    private final StorageReconciler storageReconciler;
+
+    @Value("${storage.list.page-size:100}")
+    private int pageSize;
+
+    @Value("${storage.upload.max-object-size:10485760}")
+    private long maxObjectSize;
 
     @GetMapping
-    public String listObjects(Model model) {
-        List<S3StorageItem> objects = storageService.listObjects();
+    public String listObjects(@RequestParam(required = false) String after, Model model) {
+        List<S3StorageItem> objects = storageService.listObjects(after, pageSize);
         model.addAttribute("objects", objects);
+        model.addAttribute("after", after);
+        // A full page means there may be more objects after the last one shown
+        model.addAttribute("nextAfter", objects.size() == pageSize ? objects.get(objects.size() - 1).getKey() : null);
         return "list";
     }
 
@@ -45,6 +66,10 @@ public class S3Controller {
                 redirectAttributes.addFlashAttribute("error", "Please select a file to upload");
                 return "redirect:/" + StorageConstants.STORAGE_PATH + "/upload";
             }
+            if (file.getSize() > maxObjectSize) {
+                redirectAttributes.addFlashAttribute("error", "File exceeds the maximum size of " + (maxObjectSize / (1024 * 1024)) + "MB");
+                return "redirect:/" + StorageConstants.STORAGE_PATH + "/upload";
+            }
 
             storageService.uploadObject(file);
             redirectAttributes.addFlashAttribute("success", "File uploaded successfully");
@@ -55,13 +80,19 @@ public class S3Controller {
         }
     }
     
+    /**
+     * Upload many images at once, as multiple files and/or zip archives of images
+     */
+    @PostMapping("/upload/batch")
+    @ResponseBody
+    public ResponseEntity<BatchUploadResult> uploadObjects(@RequestParam("files") List<MultipartFile> files) {
+        return ResponseEntity.ok(batchUploadService.uploadFiles(files));
+    }
+    
     @GetMapping("/view-page/{key}")
     public String viewObjectPage(@PathVariable String key, Model model, RedirectAttributes redirectAttributes) {
         try {
-            // Find the object in the list of objects
-            Optional<S3StorageItem> foundObject = storageService.listObjects().stream()
-                    .filter(obj -> obj.getKey().equals(key))
-                    .findFirst();
+            Optional<S3StorageItem> foundObject = storageService.findObject(key);
             
             if (foundObject.isPresent()) {
                 model.addAttribute("object", foundObject.get());
@@ -77,13 +108,17 @@ public class S3Controller {
     }
 
     @GetMapping("/view/{key}")
-    public ResponseEntity<InputStreamResource> viewObject(@PathVariable String key) {
+    public ResponseEntity<?> viewObject(@PathVariable String key, HttpServletRequest request) {
         try {
+            Optional<LocalFile> localFile = storageService.getLocalFile(key);
+            if (localFile.isPresent()) {
+                return localFileTransferService.serve(localFile.get(), request);
+            }
+
             InputStream inputStream = storageService.getObject(key);
             
             HttpHeaders headers = new HttpHeaders();
-            // Use a generic content type if we don't know the exact type
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentType(LocalFileTransferService.contentTypeOf(key));
             
             return ResponseEntity.ok()
                     .headers(headers)
@@ -103,4 +138,34 @@ public class S3Controller {
         }
         return "redirect:/" + StorageConstants.STORAGE_PATH;
     }
+
+    /**
+     * Delete many objects and their thumbnails, given a JSON array of keys
+     */
+    @PostMapping("/bulk-delete")
+    @ResponseBody
+    public ResponseEntity<BulkDeleteResult> deleteObjects(@RequestBody List<String> keys) {
+        return ResponseEntity.ok(storageService.deleteObjects(keys));
+    }
+
+    /**
+     * Report of the last reconciliation pass between storage and metadata
+     */
+    @GetMapping("/reconcile")
+    @ResponseBody
+    public ResponseEntity<ReconciliationReport> reconciliationReport() {
+        ReconciliationReport report = storageReconciler.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Start a reconciliation pass in the background
+     */
+    @PostMapping("/reconcile")
+    @ResponseBody
+    public ResponseEntity<Void> reconcile() {
+        return storageReconciler.trigger()
+                ? ResponseEntity.status(HttpStatus.ACCEPTED).build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.microsoft.migration.assets.model;
+
+import javax.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A thumbnail backfill, re-queueing every image for processing. The cursor (the key and id of the last
+ * metadata row published) is saved after each page, so a paused or interrupted job continues where it stopped.
+ * A running job is leased to one instance, which renews the lease after each page.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class BackfillJob {
+    @Id
+    private String id;
+    @Enumerated(EnumType.STRING)
+    private Status status;
+    private double ratePerSecond;
+    private long total;     // metadata rows when the job started
+    private long processed; // messages published so far
+    private String lastKey;
+    private String lastId;
+    private String error;
+    private String owner;                 // instance running the job
+    private LocalDateTime leaseExpiresAt; // after which another instance may take the job over
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public enum Status {
+        RUNNING, PAUSED, COMPLETED, FAILED
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
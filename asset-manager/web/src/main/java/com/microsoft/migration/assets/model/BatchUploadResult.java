@@ -0,0 +1,34 @@
+package com.microsoft.migration.assets.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BatchUploadResult {
+    private int uploaded;
+    private int failed;
+    private List<Item> items = new ArrayList<>();
+
+    public void add(Item item) {
+        items.add(item);
+        if (item.getKey() != null) {
+            uploaded++;
+        } else {
+            failed++;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private String filename;
+        private String key;   // null if the file could not be stored
+        private String error; // null if the file was stored
+    }
+}
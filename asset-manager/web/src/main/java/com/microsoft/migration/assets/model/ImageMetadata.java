@@ -2,14 +2,16 @@ package com.microsoft.migration.assets.model;
 
 import javax.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Data
 @NoArgsConstructor
-public class ImageMetadata {
+public class ImageMetadata implements Persistable<String> {
     @Id
     private String id;
     private String filename;
@@ -19,9 +21,30 @@ public class ImageMetadata {
     private String s3Url;
     private String thumbnailKey;
     private String thumbnailUrl;
+    private String thumbnailFormat;  // format the thumbnail was encoded in, which may differ from the original's
+    private Float thumbnailQuality;  // JPEG quality chosen for the thumbnail, null if lossless
+    private Long thumbnailSize;
+    @Column(length = 4096)
+    private String placeholder;      // data URI of a tiny preview, inlined in listings
+    private Integer width;   // as displayed, after applying the EXIF orientation
+    private Integer height;
+    private String cameraMake;
+    private String cameraModel;
+    private LocalDateTime capturedAt;
     private LocalDateTime uploadedAt;
     private LocalDateTime lastModified;
 
+    // Ids are assigned by the application, so track newness explicitly to let
+    // save() insert directly (and batch) instead of selecting before each insert
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
     @PrePersist
     protected void onCreate() {
         uploadedAt = LocalDateTime.now();
@@ -32,4 +55,10 @@ public class ImageMetadata {
     protected void onUpdate() {
         lastModified = LocalDateTime.now();
     }
-}
\ No newline at end of file
+
+    @PostPersist
+    @PostLoad
+    protected void markPersisted() {
+        persisted = true;
+    }
+}
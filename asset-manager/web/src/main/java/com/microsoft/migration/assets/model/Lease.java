@@ -0,0 +1,25 @@
+package com.microsoft.migration.assets.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A named lease, held by one instance at a time for work that must not run on several at once
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class Lease {
+    @Id
+    private String id;
+    private String owner;           // instance holding the lease
+    private LocalDateTime expiresAt; // after which another instance may take it
+
+    public Lease(String id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,17 @@
+package com.microsoft.migration.assets.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/**
+ * An object kept as a file on the local file system, with the size recorded when it was indexed
+ */
+@Data
+@AllArgsConstructor
+public class LocalFile {
+    private String key;
+    private Path path;
+    private long size;
+}
@@ -0,0 +1,22 @@
+package com.microsoft.migration.assets.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+public class ReconciliationReport {
+    private Instant startedAt;
+    private Instant finishedAt;
+    private boolean dryRun;
+    private long objectsScanned;
+    private long metadataScanned;
+    private long metadataCreated;          // objects that had no metadata
+    private long orphanedMetadataDeleted;  // metadata whose object is gone
+    private long orphanedThumbnailsDeleted; // thumbnails whose original is gone
+    private long missingThumbnails;
+    private long reprocessingQueued;
+    private String error; // null if the pass completed
+}
@@ -16,4 +16,8 @@ public class S3StorageItem {
     private Instant lastModified;
     private Instant uploadedAt;
     private String url;
+    private String thumbnailKey; // paired thumbnail, when the storage provider pairs them in listings
+    private Integer width;  // from metadata, null until the worker has read the image header
+    private Integer height;
+    private String placeholder; // tiny preview data URI, so listings render before thumbnails load
 }
\ No newline at end of file
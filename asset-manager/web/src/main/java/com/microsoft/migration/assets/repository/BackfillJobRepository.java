@@ -0,0 +1,59 @@
+package com.microsoft.migration.assets.repository;
+
+import com.microsoft.migration.assets.model.BackfillJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BackfillJobRepository extends JpaRepository<BackfillJob, String> {
+
+    List<BackfillJob> findByStatus(BackfillJob.Status status);
+
+    List<BackfillJob> findAllByOrderByCreatedAtDesc();
+
+    // Take a job in the given status unless another instance holds an unexpired lease on it; one instance wins
+    @Modifying
+    @Transactional
+    @Query("update BackfillJob j set j.owner = :owner, j.leaseExpiresAt = :until where j.id = :id and j.status = :status"
+            + " and (j.owner is null or j.owner = :owner or j.leaseExpiresAt is null or j.leaseExpiresAt < :now)")
+    int claim(@Param("id") String id, @Param("status") BackfillJob.Status status, @Param("owner") String owner,
+              @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    // Record a page of progress and renew the lease; fails once the job was paused elsewhere or taken over after
+    // the lease ran out, so the running instance never overwrites either
+    @Modifying
+    @Transactional
+    @Query("update BackfillJob j set j.lastKey = :lastKey, j.lastId = :lastId, j.processed = :processed,"
+            + " j.leaseExpiresAt = :until, j.updatedAt = :now"
+            + " where j.id = :id and j.owner = :owner and j.status = :running")
+    int saveProgress(@Param("id") String id, @Param("running") BackfillJob.Status running, @Param("owner") String owner,
+                     @Param("lastKey") String lastKey, @Param("lastId") String lastId, @Param("processed") long processed,
+                     @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    // Record how a run ended, unless the job was paused elsewhere or taken over meanwhile
+    @Modifying
+    @Transactional
+    @Query("update BackfillJob j set j.status = :status, j.error = :error, j.leaseExpiresAt = null, j.updatedAt = :now"
+            + " where j.id = :id and j.owner = :owner and j.status = :running")
+    int finish(@Param("id") String id, @Param("running") BackfillJob.Status running, @Param("owner") String owner,
+               @Param("status") BackfillJob.Status status, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    // Pause a job another instance is running; it stops when its next page fails to save
+    @Modifying
+    @Transactional
+    @Query("update BackfillJob j set j.status = :paused, j.updatedAt = :now where j.id = :id and j.status = :running")
+    int pause(@Param("id") String id, @Param("running") BackfillJob.Status running,
+              @Param("paused") BackfillJob.Status paused, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("update BackfillJob j set j.leaseExpiresAt = null where j.id = :id and j.owner = :owner")
+    int releaseLease(@Param("id") String id, @Param("owner") String owner);
+}
@@ -2,9 +2,31 @@ package com.microsoft.migration.assets.repository;
 
 import com.microsoft.migration.assets.model.ImageMetadata;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface ImageMetadataRepository extends JpaRepository<ImageMetadata, String> {
     // Basic CRUD operations are automatically provided by JpaRepository
+
+    List<ImageMetadata> findByS3KeyIn(Collection<String> s3Keys);
+
+    // Keyset page ordered by key in byte order (collation "C"), the order storage lists keys in. PostgreSQL only,
+    // so StorageReconciler checks the database before using it.
+    @Query(value = "SELECT * FROM image_metadata WHERE (s3_key COLLATE \"C\", id) > (:afterKey, :afterId) "
+            + "ORDER BY s3_key COLLATE \"C\", id LIMIT :limit", nativeQuery = true)
+    List<ImageMetadata> findPageOrderedByS3Key(@Param("afterKey") String afterKey, @Param("afterId") String afterId,
+                                               @Param("limit") int limit);
+
+    // Single bulk statement, rather than loading and deleting each entity
+    @Modifying
+    @Transactional
+    @Query("delete from ImageMetadata m where m.s3Key in :s3Keys")
+    int deleteByS3KeyIn(@Param("s3Keys") Collection<String> s3Keys);
 }
\ No newline at end of file
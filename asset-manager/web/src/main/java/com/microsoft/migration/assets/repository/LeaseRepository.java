@@ -0,0 +1,28 @@
+package com.microsoft.migration.assets.repository;
+
+import com.microsoft.migration.assets.model.Lease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface LeaseRepository extends JpaRepository<Lease, String> {
+
+    // Take or renew the lease unless another instance holds it unexpired; one instance wins
+    @Modifying
+    @Transactional
+    @Query("update Lease l set l.owner = :owner, l.expiresAt = :until where l.id = :id"
+            + " and (l.owner is null or l.owner = :owner or l.expiresAt is null or l.expiresAt < :now)")
+    int claim(@Param("id") String id, @Param("owner") String owner, @Param("now") LocalDateTime now,
+              @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("update Lease l set l.expiresAt = null where l.id = :id and l.owner = :owner")
+    int release(@Param("id") String id, @Param("owner") String owner);
+}
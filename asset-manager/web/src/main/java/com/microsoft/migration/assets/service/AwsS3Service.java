@@ -1,7 +1,9 @@
 package com.microsoft.migration.assets.service;
 
+import com.microsoft.migration.assets.model.BulkDeleteResult;
 import com.microsoft.migration.assets.model.ImageMetadata;
 import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.ProcessingPriority;
 import com.microsoft.migration.assets.model.S3StorageItem;
 import com.microsoft.migration.assets.repository.ImageMetadataRepository;
 import lombok.RequiredArgsConstructor;
@@ -17,7 +19,11 @@ import software.amazon.awssdk.services.s3.model.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -28,6 +34,9 @@ import static com.microsoft.migration.assets.config.RabbitConfig.IMAGE_PROCESSIN
 @Profile("!dev") // Active when not in dev profile
 public class AwsS3Service implements StorageService {
 
+    // Limit of the S3 DeleteObjects API
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+
     private final S3Client s3Client;
     private final RabbitTemplate rabbitTemplate;
     private final ImageMetadataRepository imageMetadataRepository;
@@ -41,24 +50,47 @@ public class AwsS3Service implements StorageService {
                 .bucket(bucketName)
                 .build();
 
-        ListObjectsV2Response response = s3Client.listObjectsV2(request);
+        return toStorageItems(s3Client.listObjectsV2(request).contents());
+    }
 
-        return response.contents().stream()
-                .map(s3Object -> {
-                    // Try to get metadata for upload time
-                    Instant uploadedAt = imageMetadataRepository.findAll().stream()
-                            .filter(metadata -> metadata.getS3Key().equals(s3Object.key()))
-                            .map(metadata -> metadata.getUploadedAt().atZone(java.time.ZoneId.systemDefault()).toInstant())
-                            .findFirst()
-                            .orElse(s3Object.lastModified()); // fallback to lastModified if metadata not found
+    @Override
+    public List<S3StorageItem> listObjects(String startAfter, int limit) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucketName)
+                .startAfter(startAfter)
+                .maxKeys(limit)
+                .build();
+
+        return toStorageItems(s3Client.listObjectsV2(request).contents());
+    }
+
+    private List<S3StorageItem> toStorageItems(List<S3Object> s3Objects) {
+        // Look up metadata for the whole page at once
+        List<String> keys = s3Objects.stream().map(S3Object::key).collect(Collectors.toList());
+        Map<String, ImageMetadata> metadataByKey = new HashMap<>();
+        if (!keys.isEmpty()) {
+            for (ImageMetadata metadata : imageMetadataRepository.findByS3KeyIn(keys)) {
+                metadataByKey.put(metadata.getS3Key(), metadata);
+            }
+        }
 
+        return s3Objects.stream()
+                .map(s3Object -> {
+                    ImageMetadata metadata = metadataByKey.get(s3Object.key());
+                    Instant uploadedAt = metadata != null && metadata.getUploadedAt() != null
+                            ? metadata.getUploadedAt().atZone(java.time.ZoneId.systemDefault()).toInstant()
+                            : s3Object.lastModified(); // fallback to lastModified if metadata not found
                     return new S3StorageItem(
                             s3Object.key(),
                             extractFilename(s3Object.key()),
                             s3Object.size(),
                             s3Object.lastModified(),
                             uploadedAt,
-                            generateUrl(s3Object.key())
+                            generateUrl(s3Object.key()),
+                            null,
+                            metadata != null ? metadata.getWidth() : null,
+                            metadata != null ? metadata.getHeight() : null,
+                            metadata != null ? metadata.getPlaceholder() : null
                     );
                 })
                 .collect(Collectors.toList());
@@ -66,25 +98,9 @@ public class AwsS3Service implements StorageService {
 
     @Override
     public void uploadObject(MultipartFile file) throws IOException {
-        String key = generateKey(file.getOriginalFilename());
-        PutObjectRequest request = PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .contentType(file.getContentType())
-                .build();
-        
-        s3Client.putObject(request, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+        String key = storeObject(file.getOriginalFilename(), file.getContentType(), file.getSize(), file.getInputStream());
 
-        // Send message to queue for thumbnail generation
-        ImageProcessingMessage message = new ImageProcessingMessage(
-            key,
-            file.getContentType(),
-            getStorageType(),
-            file.getSize()
-        );
-        rabbitTemplate.convertAndSend(IMAGE_PROCESSING_QUEUE, message);
-
-        // Create and save metadata to database
+        // Create and save metadata to database before the worker can look for it
         ImageMetadata metadata = new ImageMetadata();
         metadata.setId(UUID.randomUUID().toString());
         metadata.setFilename(file.getOriginalFilename());
@@ -94,6 +110,29 @@ public class AwsS3Service implements StorageService {
         metadata.setS3Url(generateUrl(key));
 
         imageMetadataRepository.save(metadata);
+
+        // Send message to queue for thumbnail generation
+        ImageProcessingMessage message = new ImageProcessingMessage(
+            key,
+            file.getContentType(),
+            getStorageType(),
+            file.getSize(),
+            ProcessingPriority.INTERACTIVE
+        );
+        rabbitTemplate.convertAndSend(IMAGE_PROCESSING_QUEUE, message);
+    }
+
+    @Override
+    public String storeObject(String filename, String contentType, long size, InputStream content) throws IOException {
+        String key = generateKey(filename);
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build();
+
+        s3Client.putObject(request, RequestBody.fromInputStream(content, size));
+        return key;
     }
 
     @Override
@@ -106,32 +145,79 @@ public class AwsS3Service implements StorageService {
         return s3Client.getObject(request);
     }
 
+    @Override
+    public boolean objectExists(String key) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        }
+    }
+
     @Override
     public void deleteObject(String key) throws IOException {
-        // Delete both original and thumbnail if it exists
-        DeleteObjectRequest request = DeleteObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .build();
-        
-        s3Client.deleteObject(request);
+        // Delete both original and thumbnail in one request
+        BulkDeleteResult result = deleteObjects(Collections.singletonList(key));
+        String error = result.getItems().get(0).getError();
+        if (error != null) {
+            throw new IOException("Failed to delete " + key + ": " + error);
+        }
+    }
 
+    @Override
+    public BulkDeleteResult deleteObjects(List<String> keys) {
+        BulkDeleteResult result = new BulkDeleteResult();
+        // Each original takes up to four of the identifiers allowed per request, the rest for its thumbnail's keys
+        int originalsPerRequest = MAX_KEYS_PER_DELETE / 4;
+        for (int from = 0; from < keys.size(); from += originalsPerRequest) {
+            List<String> chunk = keys.subList(from, Math.min(from + originalsPerRequest, keys.size()));
+            deleteChunk(chunk, result);
+        }
+        return result;
+    }
+
+    private void deleteChunk(List<String> keys, BulkDeleteResult result) {
+        List<ObjectIdentifier> identifiers = new ArrayList<>(keys.size() * 4);
+        for (String key : keys) {
+            identifiers.add(ObjectIdentifier.builder().key(key).build());
+            for (String thumbnailKey : getThumbnailKeys(key)) {
+                identifiers.add(ObjectIdentifier.builder().key(thumbnailKey).build());
+            }
+        }
+
+        Map<String, String> errors = new HashMap<>();
         try {
-            // Try to delete thumbnail if it exists
-            DeleteObjectRequest thumbnailRequest = DeleteObjectRequest.builder()
+            DeleteObjectsRequest request = DeleteObjectsRequest.builder()
                     .bucket(bucketName)
-                    .key(getThumbnailKey(key))
+                    // Quiet mode only reports the keys that failed
+                    .delete(Delete.builder().objects(identifiers).quiet(true).build())
                     .build();
-            s3Client.deleteObject(thumbnailRequest);
+            for (S3Error error : s3Client.deleteObjects(request).errors()) {
+                errors.put(error.key(), error.code() + ": " + error.message());
+            }
         } catch (Exception e) {
-            // Ignore if thumbnail doesn't exist
+            for (String key : keys) {
+                errors.put(key, e.getMessage());
+            }
         }
 
-        // Delete metadata from database
-        imageMetadataRepository.findAll().stream()
-                .filter(metadata -> metadata.getS3Key().equals(key))
-                .findFirst()
-                .ifPresent(metadata -> imageMetadataRepository.delete(metadata));
+        // Thumbnail failures are ignored, as with single deletes; only originals are reported
+        List<String> deleted = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String error = errors.get(key);
+            result.add(new BulkDeleteResult.Item(key, error));
+            if (error == null) {
+                deleted.add(key);
+            }
+        }
+
+        if (!deleted.isEmpty()) {
+            imageMetadataRepository.deleteByS3KeyIn(deleted);
+        }
     }
 
     @Override
@@ -33,8 +33,8 @@ public class BackupMessageProcessor {
                                     @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
         try {
             log.info("[BACKUP] Monitoring message: {}", message.getKey());
-            log.info("[BACKUP] Content type: {}, Storage: {}, Size: {}", 
-                    message.getContentType(), message.getStorageType(), message.getSize());
+            log.info("[BACKUP] Content type: {}, Storage: {}, Size: {}, Priority: {}", 
+                    message.getContentType(), message.getStorageType(), message.getSize(), message.getPriority());
             
             // Acknowledge the message
             channel.basicAck(deliveryTag, false);
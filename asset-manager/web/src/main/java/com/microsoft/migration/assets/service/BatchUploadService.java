@@ -0,0 +1,277 @@
+package com.microsoft.migration.assets.service;
+
+import com.microsoft.migration.assets.model.BatchUploadResult;
+import com.microsoft.migration.assets.model.ImageMetadata;
+import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.ProcessingPriority;
+import com.microsoft.migration.assets.repository.ImageMetadataRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.microsoft.migration.assets.config.RabbitConfig.queueFor;
+
+/**
+ * Uploads many files in one request, either as separate multipart files or as entries of zip archives.
+ *
+ * Files are stored concurrently on a bounded executor; when it is saturated the request thread stores
+ * the next file itself, which throttles reading of the upload. Once everything is stored, metadata is
+ * inserted in JDBC batches and processing messages are published in one batch with publisher confirms.
+ *
+ * Zip entries are stored under their file name alone, and the name is the key on local storage, so a name
+ * may occur only once per batch. Later files with a name already taken fail instead of overwriting the first.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchUploadService {
+
+    private final StorageService storageService;
+    private final RabbitTemplate rabbitTemplate;
+    private final ImageMetadataRepository imageMetadataRepository;
+
+    @Value("${storage.batch.parallelism:8}")
+    private int parallelism;
+
+    @Value("${storage.upload.max-object-size:10485760}")
+    private long maxObjectSize;
+
+    @Value("${storage.batch.metadata-batch-size:500}")
+    private int metadataBatchSize;
+
+    @Value("${storage.batch.confirm-timeout-ms:30000}")
+    private long confirmTimeoutMillis;
+
+    // Batches up to this many files are processed like single uploads; larger ones are imports, in the bulk lane
+    @Value("${storage.batch.interactive-limit:20}")
+    private int interactiveLimit;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(parallelism),
+                runnable -> new Thread(runnable, "batch-upload-" + threadCount.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    public BatchUploadResult uploadFiles(List<MultipartFile> files) {
+        List<PendingUpload> pending = new ArrayList<>();
+        Set<String> filenames = new HashSet<>();
+        for (MultipartFile file : files) {
+            if (file.isEmpty()) {
+                continue;
+            }
+            if (isZip(file)) {
+                submitZipEntries(file, pending, filenames);
+            } else if (!filenames.add(file.getOriginalFilename())) {
+                pending.add(PendingUpload.failed(file.getOriginalFilename(), "Duplicate file name in batch"));
+            } else if (file.getSize() > maxObjectSize) {
+                pending.add(PendingUpload.failed(file.getOriginalFilename(), "File exceeds maximum size of " + maxObjectSize + " bytes"));
+            } else {
+                pending.add(submit(file.getOriginalFilename(), file.getContentType(), file.getSize(), () -> file.getInputStream(), null));
+            }
+        }
+
+        ProcessingPriority priority = pending.size() <= interactiveLimit
+                ? ProcessingPriority.INTERACTIVE : ProcessingPriority.BULK;
+        BatchUploadResult result = new BatchUploadResult();
+        List<ImageMetadata> metadata = new ArrayList<>();
+        List<ImageProcessingMessage> messages = new ArrayList<>();
+        for (PendingUpload upload : pending) {
+            String key = upload.await();
+            result.add(new BatchUploadResult.Item(upload.filename, key, upload.error));
+            if (key != null) {
+                metadata.add(createMetadata(upload, key));
+                messages.add(new ImageProcessingMessage(key, upload.contentType, storageService.getStorageType(), upload.size, priority));
+            }
+        }
+
+        // Record metadata before publishing, so the worker always finds it when it processes the image
+        for (int from = 0; from < metadata.size(); from += metadataBatchSize) {
+            imageMetadataRepository.saveAll(metadata.subList(from, Math.min(from + metadataBatchSize, metadata.size())));
+        }
+        publish(messages);
+
+        log.info("Batch upload stored {} files, {} failed", result.getUploaded(), result.getFailed());
+        return result;
+    }
+
+    private void submitZipEntries(MultipartFile file, List<PendingUpload> pending, Set<String> filenames) {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                // Keep only the file name, so entries cannot point outside storage
+                String filename = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                if (entry.isDirectory() || filename.isEmpty() || filename.startsWith(".")
+                        || entry.getName().startsWith("__MACOSX/")) {
+                    continue;
+                }
+                if (!filenames.add(filename)) {
+                    pending.add(PendingUpload.failed(entry.getName(), "Duplicate file name in batch: " + filename));
+                    continue;
+                }
+
+                Path spooled;
+                try {
+                    spooled = spool(zip, filename);
+                } catch (IOException e) {
+                    pending.add(PendingUpload.failed(filename, e.getMessage()));
+                    continue;
+                }
+                String contentType = URLConnection.guessContentTypeFromName(filename);
+                pending.add(submit(filename, contentType != null ? contentType : "application/octet-stream",
+                        Files.size(spooled), () -> Files.newInputStream(spooled), spooled));
+            }
+        } catch (IOException e) {
+            log.error("Failed to read zip archive {}", file.getOriginalFilename(), e);
+            pending.add(PendingUpload.failed(file.getOriginalFilename(), "Failed to read zip archive: " + e.getMessage()));
+        }
+    }
+
+    private PendingUpload submit(String filename, String contentType, long size, ContentSource source, Path spooled) {
+        Future<String> key = executor.submit(() -> {
+            try (InputStream content = source.open()) {
+                return storageService.storeObject(filename, contentType, size, content);
+            } finally {
+                if (spooled != null) {
+                    Files.deleteIfExists(spooled);
+                }
+            }
+        });
+        return new PendingUpload(filename, contentType, size, key, null);
+    }
+
+    /**
+     * Copy a zip entry to a temporary file so that it can be stored on another thread
+     */
+    private Path spool(InputStream in, String filename) throws IOException {
+        Path temp = Files.createTempFile("batch-upload-", null);
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxObjectSize) {
+                    throw new IOException("File exceeds maximum size of " + maxObjectSize + " bytes");
+                }
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    private void publish(List<ImageProcessingMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        rabbitTemplate.invoke(operations -> {
+            for (ImageProcessingMessage message : messages) {
+                operations.convertAndSend(queueFor(message.getPriority()), message);
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+            return null;
+        });
+    }
+
+    private ImageMetadata createMetadata(PendingUpload upload, String key) {
+        ImageMetadata metadata = new ImageMetadata();
+        metadata.setId(UUID.randomUUID().toString());
+        metadata.setFilename(upload.filename);
+        metadata.setContentType(upload.contentType);
+        metadata.setSize(upload.size);
+        metadata.setS3Key(key);
+        metadata.setS3Url(storageService.generateUrl(key));
+        return metadata;
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String filename = file.getOriginalFilename();
+        return "application/zip".equals(file.getContentType())
+                || "application/x-zip-compressed".equals(file.getContentType())
+                || (filename != null && filename.toLowerCase().endsWith(".zip"));
+    }
+
+    @FunctionalInterface
+    private interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
+    private static final class PendingUpload {
+        private final String filename;
+        private final String contentType;
+        private final long size;
+        private final Future<String> key;
+        private String error;
+
+        private PendingUpload(String filename, String contentType, long size, Future<String> key, String error) {
+            this.filename = filename;
+            this.contentType = contentType;
+            this.size = size;
+            this.key = key;
+            this.error = error;
+        }
+
+        private static PendingUpload failed(String filename, String error) {
+            return new PendingUpload(filename, null, 0, null, error);
+        }
+
+        /**
+         * Wait for the file to be stored, returning its key, or null with the error recorded if it failed
+         */
+        private String await() {
+            if (key == null) {
+                return null;
+            }
+            try {
+                return key.get();
+            } catch (ExecutionException e) {
+                log.warn("Failed to store {} in batch upload", filename, e.getCause());
+                Throwable cause = e.getCause();
+                error = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = "Interrupted";
+            }
+            return null;
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.microsoft.migration.assets.service;
 
+import com.microsoft.migration.assets.model.BulkDeleteResult;
+import com.microsoft.migration.assets.model.ImageMetadata;
 import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.LocalFile;
+import com.microsoft.migration.assets.model.ProcessingPriority;
 import com.microsoft.migration.assets.model.S3StorageItem;
+import com.microsoft.migration.assets.repository.ImageMetadataRepository;
+import com.microsoft.migration.assets.util.ShardedStorageLayout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -12,12 +18,18 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.microsoft.migration.assets.config.RabbitConfig.IMAGE_PROCESSING_QUEUE;
 
@@ -26,58 +38,81 @@ import static com.microsoft.migration.assets.config.RabbitConfig.IMAGE_PROCESSIN
 public class LocalFileStorageService implements StorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(LocalFileStorageService.class);
-    
+
+    // Keys per metadata delete statement, well under the bind parameter limit
+    private static final int METADATA_DELETE_CHUNK_SIZE = 1000;
+
     private final RabbitTemplate rabbitTemplate;
-    
+    private final ImageMetadataRepository imageMetadataRepository;
+
     @Value("${local.storage.directory:../storage}")
     private String storageDirectory;
-    
+
+    @Value("${local.storage.index.rescan-interval-ms:300000}")
+    private long indexRescanIntervalMillis;
+
+    @Value("${local.storage.shard.levels:2}")
+    private int shardLevels;
+
+    @Value("${local.storage.shard.width:2}")
+    private int shardWidth;
+
     private Path rootLocation;
 
-    public LocalFileStorageService(RabbitTemplate rabbitTemplate) {
+    private ShardedStorageLayout layout;
+
+    private LocalStorageIndex index;
+
+    public LocalFileStorageService(RabbitTemplate rabbitTemplate, ImageMetadataRepository imageMetadataRepository) {
         this.rabbitTemplate = rabbitTemplate;
+        this.imageMetadataRepository = imageMetadataRepository;
     }
-    
+
     @PostConstruct
     public void init() throws IOException {
         rootLocation = Paths.get(storageDirectory).toAbsolutePath().normalize();
         logger.info("Local storage directory: {}", rootLocation);
-        
+
         // Create directory if it doesn't exist
         if (!Files.exists(rootLocation)) {
             Files.createDirectories(rootLocation);
             logger.info("Created local storage directory");
         }
+
+        layout = new ShardedStorageLayout(rootLocation, shardLevels, shardWidth);
+        index = new LocalStorageIndex(layout, indexRescanIntervalMillis);
+        index.start();
+
+        if (shardLevels > 0) {
+            Thread migration = new Thread(this::migrateFlatLayout, "local-storage-shard-migration");
+            migration.setDaemon(true);
+            migration.start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (index != null) {
+            index.close();
+        }
     }
 
     @Override
     public List<S3StorageItem> listObjects() {
-        try {
-            return Files.walk(rootLocation, 1)
-                .filter(path -> !path.equals(rootLocation))
-                .map(path -> {
-                    try {
-                        String filename = path.getFileName().toString();
-                        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
-                        return new S3StorageItem(
-                            filename,
-                            filename,
-                            Files.size(path),
-                            attrs.lastModifiedTime().toInstant(),
-                            attrs.creationTime().toInstant(),
-                            generateUrl(filename)
-                        );
-                    } catch (IOException e) {
-                        logger.error("Failed to read file attributes", e);
-                        return null;
-                    }
-                })
-                .filter(s3StorageItem -> s3StorageItem != null)
-                .collect(Collectors.toList());
-        } catch (IOException e) {
-            logger.error("Failed to list files", e);
-            return new ArrayList<>();
-        }
+        return listObjects(null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<S3StorageItem> listObjects(String startAfter, int limit) {
+        return toStorageItems(index.page(startAfter, limit));
+    }
+
+    @Override
+    public Optional<S3StorageItem> findObject(String key) {
+        LocalStorageIndex.Entry entry = lookup(key);
+        return entry != null
+                ? Optional.of(toStorageItems(Collections.singletonList(entry)).get(0))
+                : Optional.empty();
     }
 
     @Override
@@ -85,60 +120,221 @@ public class LocalFileStorageService implements StorageService {
         if (file.isEmpty()) {
             throw new IOException("Failed to store empty file");
         }
-        
-        String filename = StringUtils.cleanPath(file.getOriginalFilename());
-        if (filename.contains("..")) {
-            throw new IOException("Cannot store file with relative path outside current directory");
-        }
-        
-        Path targetLocation = rootLocation.resolve(filename);
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-        logger.info("Stored file: {}", targetLocation);
+
+        String filename = storeObject(file.getOriginalFilename(), file.getContentType(), file.getSize(), file.getInputStream());
+
+        // Record metadata like the S3 backend does, so both backends can be reconciled the same way
+        ImageMetadata metadata = new ImageMetadata();
+        metadata.setId(UUID.randomUUID().toString());
+        metadata.setFilename(filename);
+        metadata.setContentType(file.getContentType());
+        metadata.setSize(file.getSize());
+        metadata.setS3Key(filename);
+        metadata.setS3Url(generateUrl(filename));
+        imageMetadataRepository.save(metadata);
 
         // Send message to queue for thumbnail generation
         ImageProcessingMessage message = new ImageProcessingMessage(
             filename,
             file.getContentType(),
             getStorageType(),
-            file.getSize()
+            file.getSize(),
+            ProcessingPriority.INTERACTIVE
         );
         rabbitTemplate.convertAndSend(IMAGE_PROCESSING_QUEUE, message);
     }
 
+    @Override
+    public String storeObject(String originalFilename, String contentType, long size, InputStream content) throws IOException {
+        String filename = StringUtils.cleanPath(originalFilename);
+        if (filename.contains("..") || filename.contains("/")) {
+            throw new IOException("Cannot store file with relative path outside current directory");
+        }
+
+        Path targetLocation = layout.resolve(filename);
+        Files.createDirectories(targetLocation.getParent());
+        Files.copy(content, targetLocation, StandardCopyOption.REPLACE_EXISTING);
+        if (!targetLocation.equals(layout.resolveFlat(filename))) {
+            // Replace any copy of the same key still in the flat layout
+            Files.deleteIfExists(layout.resolveFlat(filename));
+        }
+        index.refresh(filename);
+        logger.info("Stored file: {}", targetLocation);
+        return filename;
+    }
+
     @Override
     public InputStream getObject(String key) throws IOException {
-        Path file = rootLocation.resolve(key);
-        if (!Files.exists(file)) {
+        LocalStorageIndex.Entry entry = lookup(key);
+        if (entry == null) {
+            throw new FileNotFoundException("File not found: " + key);
+        }
+        return new BufferedInputStream(Files.newInputStream(entry.getPath()));
+    }
+
+    @Override
+    public boolean objectExists(String key) {
+        return lookup(key) != null;
+    }
+
+    @Override
+    public Optional<LocalFile> getLocalFile(String key) throws IOException {
+        LocalStorageIndex.Entry entry = lookup(key);
+        if (entry == null) {
             throw new FileNotFoundException("File not found: " + key);
         }
-        return new BufferedInputStream(Files.newInputStream(file));
+        return Optional.of(new LocalFile(entry.getKey(), entry.getPath(), entry.getSize()));
     }
 
     @Override
     public void deleteObject(String key) throws IOException {
+        deleteFiles(key);
+        imageMetadataRepository.deleteByS3KeyIn(Collections.singletonList(key));
+    }
+
+    /**
+     * Delete the file of an object and its thumbnail, leaving the metadata to the caller
+     */
+    private void deleteFiles(String key) throws IOException {
         // Delete both original and thumbnail if it exists
-        Path file = rootLocation.resolve(key);
+        Path file = layout.locate(key);
         if (!Files.exists(file)) {
+            index.remove(key);
             throw new FileNotFoundException("File not found: " + key);
         }
         Files.delete(file);
+        index.remove(key);
         logger.info("Deleted file: {}", file);
 
-        // Try to delete thumbnail if it exists
-        try {
-            Path thumbnailFile = rootLocation.resolve(getThumbnailKey(key));
-            if (Files.exists(thumbnailFile)) {
-                Files.delete(thumbnailFile);
-                logger.info("Deleted thumbnail file: {}", thumbnailFile);
+        // Try to delete the thumbnail, under whichever key its format gave it
+        for (String thumbnailKey : getThumbnailKeys(key)) {
+            try {
+                Path thumbnailFile = layout.locate(thumbnailKey);
+                if (Files.exists(thumbnailFile)) {
+                    Files.delete(thumbnailFile);
+                    logger.info("Deleted thumbnail file: {}", thumbnailFile);
+                }
+                index.remove(thumbnailKey);
+            } catch (Exception e) {
+                // Ignore if thumbnail doesn't exist or can't be deleted
+                logger.warn("Could not delete thumbnail {} of {}: {}", thumbnailKey, key, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public BulkDeleteResult deleteObjects(List<String> keys) {
+        BulkDeleteResult result = new BulkDeleteResult();
+        List<String> deleted = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            try {
+                deleteFiles(key);
+                deleted.add(key);
+                result.add(new BulkDeleteResult.Item(key, null));
+            } catch (IOException e) {
+                result.add(new BulkDeleteResult.Item(key, e.getMessage()));
             }
-        } catch (Exception e) {
-            // Ignore if thumbnail doesn't exist or can't be deleted
-            logger.warn("Could not delete thumbnail for {}: {}", key, e.getMessage());
         }
+
+        // Metadata of the deleted keys goes in a few statements rather than one per key
+        for (int from = 0; from < deleted.size(); from += METADATA_DELETE_CHUNK_SIZE) {
+            imageMetadataRepository.deleteByS3KeyIn(deleted.subList(from, Math.min(from + METADATA_DELETE_CHUNK_SIZE, deleted.size())));
+        }
+        return result;
     }
 
     @Override
     public String getStorageType() {
         return "local";
     }
-}
\ No newline at end of file
+
+    /**
+     * Move files from the flat layout into their shard directories. Runs in the background after startup;
+     * lookups check both layouts, so files stay available while they are moved.
+     */
+    private void migrateFlatLayout() {
+        int moved = 0;
+        try (Stream<Path> paths = Files.list(rootLocation)) {
+            for (Path flat : (Iterable<Path>) paths::iterator) {
+                if (!Files.isRegularFile(flat)) {
+                    continue;
+                }
+                String key = flat.getFileName().toString();
+                Path sharded = layout.resolve(key);
+                try {
+                    Files.createDirectories(sharded.getParent());
+                    try {
+                        linkOrMove(flat, sharded);
+                        moved++;
+                    } catch (FileAlreadyExistsException e) {
+                        // Uploads write to the shard directory while this runs, so the copy there is newer
+                        logger.info("Discarding {}, superseded by {}", flat, sharded);
+                    }
+                    Files.deleteIfExists(flat);
+                    index.refresh(key);
+                } catch (IOException e) {
+                    logger.warn("Could not move {} into its shard directory: {}", flat, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to migrate local storage to the sharded layout", e);
+        }
+        if (moved > 0) {
+            logger.info("Moved {} files into shard directories", moved);
+        }
+    }
+
+    /**
+     * Give a flat file its sharded path without ever replacing a file already there. A rename replaces its target,
+     * so the file is hard-linked instead, which fails if the target exists; the flat name is removed by the caller.
+     */
+    private static void linkOrMove(Path flat, Path sharded) throws IOException {
+        try {
+            Files.createLink(sharded, flat);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // No hard links on this file system; without REPLACE_EXISTING the move refuses an existing target
+            Files.move(flat, sharded);
+        }
+    }
+
+    /**
+     * Resolve a key through the index, falling back to the file system for files
+     * that were written since the index last heard about them.
+     */
+    private LocalStorageIndex.Entry lookup(String key) {
+        LocalStorageIndex.Entry entry = index.get(key);
+        return entry != null ? entry : index.refresh(key);
+    }
+
+    private List<S3StorageItem> toStorageItems(List<LocalStorageIndex.Entry> entries) {
+        // Look up metadata for the whole page at once
+        Map<String, ImageMetadata> metadataByKey = new HashMap<>();
+        if (!entries.isEmpty()) {
+            List<String> keys = entries.stream().map(LocalStorageIndex.Entry::getKey).collect(Collectors.toList());
+            for (ImageMetadata metadata : imageMetadataRepository.findByS3KeyIn(keys)) {
+                metadataByKey.put(metadata.getS3Key(), metadata);
+            }
+        }
+
+        List<S3StorageItem> items = new ArrayList<>(entries.size());
+        for (LocalStorageIndex.Entry entry : entries) {
+            LocalStorageIndex.Entry thumbnail = index.getThumbnail(entry.getKey());
+            ImageMetadata metadata = metadataByKey.get(entry.getKey());
+            items.add(new S3StorageItem(
+                entry.getKey(),
+                entry.getKey(),
+                entry.getSize(),
+                entry.getLastModified(),
+                entry.getCreatedAt(),
+                generateUrl(entry.getKey()),
+                thumbnail != null ? thumbnail.getKey() : null,
+                metadata != null ? metadata.getWidth() : null,
+                metadata != null ? metadata.getHeight() : null,
+                metadata != null ? metadata.getPlaceholder() : null
+            ));
+        }
+        return items;
+    }
+}
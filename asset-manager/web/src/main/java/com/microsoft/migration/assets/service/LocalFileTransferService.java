@@ -0,0 +1,74 @@
+package com.microsoft.migration.assets.service;
+
+import com.microsoft.migration.assets.model.LocalFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Serves files from the local file system without copying them through user space where possible.
+ *
+ * Large files are handed to Tomcat's sendfile support when the connector offers it, so the kernel
+ * copies the file straight to the socket. Small files, and all files on connectors without sendfile,
+ * are streamed as usual, and so are range requests, which Spring answers with the requested part.
+ *
+ * The storage index only locates the file. Its size is read from the file system when the file is served,
+ * since the index lags behind a thumbnail the worker has just rewritten.
+ */
+@Service
+public class LocalFileTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileTransferService.class);
+
+    // Request attributes understood by Tomcat's NIO/NIO2/APR connectors
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    @Value("${local.storage.transfer.sendfile-enabled:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${local.storage.transfer.min-size:65536}")
+    private long minTransferSize;
+
+    public ResponseEntity<?> serve(LocalFile file, HttpServletRequest request) throws IOException {
+        long length = Files.size(file.getPath());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentTypeOf(file.getKey()));
+
+        if (length >= minTransferSize && sendfileEnabled && request.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            headers.setContentLength(length);
+            // Tomcat writes the file after the handler returns; the response must not have a body
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, length);
+            logger.debug("Serving {} ({} bytes) with sendfile", file.getPath(), length);
+            return ResponseEntity.ok().headers(headers).build();
+        }
+
+        // The length is left to Spring, which sets it for the whole file or for the requested range
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new FileSystemResource(file.getPath()));
+    }
+
+    /**
+     * Content type for a key, from its file extension, so images display inline in the browser
+     */
+    public static MediaType contentTypeOf(String key) {
+        return MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+}
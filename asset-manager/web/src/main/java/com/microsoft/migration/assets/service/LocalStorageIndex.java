@@ -0,0 +1,407 @@
+package com.microsoft.migration.assets.service;
+
+import com.microsoft.migration.assets.util.ShardedStorageLayout;
+import com.microsoft.migration.assets.util.StorageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-process index of the local storage directory and its shard directories.
+ *
+ * Files are kept sorted by key, with each thumbnail attached to its original rather than listed on its own,
+ * so listings page through the index instead of walking and stat-ing the directory on every request.
+ * The index is kept current by the storage service's own uploads and deletes, by {@link WatchService} events
+ * for files written by other processes (such as the worker), and by a periodic rescan for file systems
+ * that do not deliver watch events (such as NFS).
+ */
+class LocalStorageIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorageIndex.class);
+
+
+    private final ShardedStorageLayout layout;
+    private final Path rootLocation;
+    private final long rescanIntervalMillis;
+
+    // Originals (and thumbnails whose original is missing) sorted by key
+    private volatile ConcurrentSkipListMap<String, Entry> originals = new ConcurrentSkipListMap<>();
+    // Thumbnails keyed by the key of their original
+    private volatile ConcurrentHashMap<String, Entry> thumbnails = new ConcurrentHashMap<>();
+
+    // Serializes rebuilds, so the rescan and a watch overflow don't walk the tree at the same time
+    private final Object rebuildLock = new Object();
+    // Keys refreshed or removed while a rebuild walks the tree, null when no rebuild is running. Guarded by this.
+    private Set<String> changedDuringRebuild;
+
+    private WatchService watchService;
+    private Thread watcherThread;
+    private ScheduledExecutorService rescanExecutor;
+
+    LocalStorageIndex(ShardedStorageLayout layout, long rescanIntervalMillis) {
+        this.layout = layout;
+        this.rootLocation = layout.getRoot();
+        this.rescanIntervalMillis = rescanIntervalMillis;
+    }
+
+    /**
+     * Build the index and start following changes to the directory.
+     */
+    void start() throws IOException {
+        rebuild();
+
+        try {
+            watchService = rootLocation.getFileSystem().newWatchService();
+            registerTree(rootLocation, false);
+            watcherThread = new Thread(this::watch, "local-storage-index-watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Watching {} is not supported, relying on periodic rescans: {}", rootLocation, e.getMessage());
+        }
+
+        if (rescanIntervalMillis > 0) {
+            rescanExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "local-storage-index-rescan");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rescanExecutor.scheduleWithFixedDelay(() -> {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    logger.error("Failed to rescan local storage directory", e);
+                }
+            }, rescanIntervalMillis, rescanIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rebuild the index from a full scan of the directory and swap it in atomically.
+     *
+     * The walk runs without holding the index lock, so uploads and deletes are not blocked behind it.
+     * Keys refreshed or removed during the walk are recorded and re-read when the new maps are swapped in,
+     * so those changes are not lost to a walk that passed them before they happened.
+     */
+    void rebuild() throws IOException {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            ConcurrentSkipListMap<String, Entry> newOriginals = new ConcurrentSkipListMap<>();
+            ConcurrentHashMap<String, Entry> newThumbnails = new ConcurrentHashMap<>();
+
+            try {
+                // Files live at the shard depth, or directly under the root until they are migrated from the flat layout
+                try (Stream<Path> paths = Files.walk(rootLocation, layout.getLevels() + 1)) {
+                    for (Path path : (Iterable<Path>) paths::iterator) {
+                        Entry entry = readEntry(path);
+                        if (entry != null) {
+                            add(newOriginals, newThumbnails, entry);
+                        }
+                    }
+                }
+
+                synchronized (this) {
+                    originals = newOriginals;
+                    thumbnails = newThumbnails;
+                    for (String key : changedDuringRebuild) {
+                        Entry entry = readEntry(layout.locate(key));
+                        if (entry == null) {
+                            removeLocked(key);
+                        } else {
+                            add(originals, thumbnails, entry);
+                        }
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    changedDuringRebuild = null;
+                }
+            }
+            logger.info("Indexed {} objects in {}", newOriginals.size() + newThumbnails.size(), rootLocation);
+        }
+    }
+
+    /**
+     * Re-read a single key from the file system, adding, updating or removing it as needed.
+     * Returns the indexed entry, or null if the file does not exist.
+     */
+    Entry refresh(String key) {
+        Entry entry = readEntry(layout.locate(key));
+        synchronized (this) {
+            recordChange(key);
+            if (entry == null) {
+                removeLocked(key);
+            } else {
+                add(originals, thumbnails, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remove a key from the index.
+     */
+    void remove(String key) {
+        synchronized (this) {
+            recordChange(key);
+            removeLocked(key);
+        }
+    }
+
+    // Caller holds the index lock
+    private void recordChange(String key) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(key);
+        }
+    }
+
+    /**
+     * Look up an indexed file by key, whether it is an original or a thumbnail.
+     */
+    Entry get(String key) {
+        Entry entry = originals.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        String originalKey = StorageUtil.getOriginalKey(key);
+        if (originalKey != null) {
+            Entry thumbnail = thumbnails.get(originalKey);
+            if (thumbnail != null && thumbnail.getKey().equals(key)) {
+                return thumbnail;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the thumbnail paired with an original, if any.
+     */
+    Entry getThumbnail(String originalKey) {
+        return thumbnails.get(originalKey);
+    }
+
+    /**
+     * List originals in key order, starting after the given key (or from the beginning if null).
+     */
+    List<Entry> page(String startAfter, int limit) {
+        NavigableMap<String, Entry> view = startAfter == null
+                ? originals
+                : originals.tailMap(startAfter, false);
+
+        List<Entry> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Entry entry : view.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(entry);
+        }
+        return page;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rescanExecutor != null) {
+            rescanExecutor.shutdownNow();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    // Only closing the index or interrupting the thread ends the loop; a failed event leaves its change to the
+    // rescan
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey watchKey = watchService.take();
+                for (WatchEvent<?> event : watchKey.pollEvents()) {
+                    try {
+                        handle(watchKey, event);
+                    } catch (ClosedWatchServiceException e) {
+                        throw e;
+                    } catch (IOException | RuntimeException e) {
+                        logger.error("Failed to follow a change to {}", rootLocation, e);
+                    }
+                }
+                if (!watchKey.reset()) {
+                    logger.warn("Stopped watching {}", watchKey.watchable());
+                    if (watchKey.watchable().equals(rootLocation)) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Index closed
+        }
+    }
+
+    private void handle(WatchKey watchKey, WatchEvent<?> event) throws IOException {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            logger.warn("Watch events overflowed for {}, rebuilding index", rootLocation);
+            rebuild();
+            return;
+        }
+        Path changed = ((Path) watchKey.watchable()).resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+            registerTree(changed, true);
+        } else {
+            refresh(changed.getFileName().toString());
+        }
+    }
+
+    /**
+     * Watch a directory and the shard directories below it. For directories created after startup,
+     * also index files that appeared before the watch was in place.
+     */
+    private void registerTree(Path directory, boolean indexFiles) {
+        int depth = layout.getLevels() - (directory.getNameCount() - rootLocation.getNameCount());
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(directory, Math.max(depth, 0))) {
+            directories = paths.filter(Files::isDirectory).collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.error("Failed to list directories under {}", directory, e);
+            return;
+        }
+
+        for (Path dir : directories) {
+            try {
+                dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                if (indexFiles) {
+                    try (Stream<Path> files = Files.list(dir)) {
+                        files.filter(Files::isRegularFile)
+                                .forEach(file -> refresh(file.getFileName().toString()));
+                    }
+                }
+            } catch (IOException e) {
+                // Typically the per-user watch limit; changes under this directory are picked up by rescans
+                logger.warn("Could not watch {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    private void removeLocked(String key) {
+        Entry removed = originals.remove(key);
+        if (removed != null) {
+            // A thumbnail left without its original is listed on its own until it is removed too
+            Entry thumbnail = thumbnails.remove(key);
+            if (thumbnail != null) {
+                originals.put(thumbnail.getKey(), thumbnail);
+            }
+            return;
+        }
+
+        String originalKey = StorageUtil.getOriginalKey(key);
+        if (originalKey != null) {
+            Entry thumbnail = thumbnails.get(originalKey);
+            if (thumbnail != null && thumbnail.getKey().equals(key)) {
+                thumbnails.remove(originalKey);
+            }
+        }
+    }
+
+    private static void add(Map<String, Entry> originals, Map<String, Entry> thumbnails, Entry entry) {
+        String originalKey = StorageUtil.getOriginalKey(entry.getKey());
+        if (originalKey != null && originals.containsKey(originalKey)) {
+            thumbnails.put(originalKey, entry);
+            return;
+        }
+
+        originals.put(entry.getKey(), entry);
+        // Attach a thumbnail that was indexed before its original
+        for (String thumbnailKey : StorageUtil.getThumbnailKeys(entry.getKey())) {
+            Entry thumbnail = originals.remove(thumbnailKey);
+            if (thumbnail != null) {
+                thumbnails.put(entry.getKey(), thumbnail);
+                break;
+            }
+        }
+    }
+
+    private Entry readEntry(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            return new Entry(
+                    path.getFileName().toString(),
+                    path,
+                    attrs.size(),
+                    attrs.lastModifiedTime().toInstant(),
+                    attrs.creationTime().toInstant());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.error("Failed to read file attributes for {}", path, e);
+            return null;
+        }
+    }
+
+    static final class Entry {
+        private final String key;
+        private final Path path;
+        private final long size;
+        private final Instant lastModified;
+        private final Instant createdAt;
+
+        Entry(String key, Path path, long size, Instant lastModified, Instant createdAt) {
+            this.key = key;
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.createdAt = createdAt;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        Instant getLastModified() {
+            return lastModified;
+        }
+
+        Instant getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
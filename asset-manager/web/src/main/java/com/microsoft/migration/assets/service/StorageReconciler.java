@@ -0,0 +1,539 @@
+package com.microsoft.migration.assets.service;
+
+import com.microsoft.migration.assets.model.ImageMetadata;
+import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.ProcessingPriority;
+import com.microsoft.migration.assets.model.ReconciliationReport;
+import com.microsoft.migration.assets.model.S3StorageItem;
+import com.microsoft.migration.assets.model.Lease;
+import com.microsoft.migration.assets.repository.ImageMetadataRepository;
+import com.microsoft.migration.assets.repository.LeaseRepository;
+import com.microsoft.migration.assets.util.StorageUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.net.URLConnection;
+import java.sql.DatabaseMetaData;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static com.microsoft.migration.assets.config.RabbitConfig.IMAGE_PROCESSING_BULK_QUEUE;
+
+/**
+ * Background repair of drift between stored objects and their metadata.
+ *
+ * Each pass walks storage listings and metadata rows page by page, both in key order, and merges them like a
+ * sorted merge-join, so memory stays bounded by the page size and the pending thumbnail cap however many objects
+ * there are. Along the way it creates metadata for objects that have none, deletes metadata and thumbnails left
+ * behind by deleted objects, and re-queues images whose thumbnail is missing, at a throttled rate so a large
+ * backlog cannot flood the worker.
+ * Anything changed within the grace period is left alone, as it may belong to an upload still in progress.
+ *
+ * Passes run on one instance at a time, the one holding the reconciler's lease, which it renews as it goes.
+ * Repairs are only reported until {@code storage.reconcile.dry-run} is turned off. Metadata is read in the byte
+ * order storage lists keys in, which needs PostgreSQL's "C" collation, so on other databases no pass runs.
+ */
+@Slf4j
+@Service
+public class StorageReconciler {
+
+    // Originals remembered for matching thumbnails that sort after them
+    private static final int RECENT_ORIGINALS = 1024;
+
+    private static final String LEASE_ID = "storage-reconciler";
+
+    private final StorageService storageService;
+    private final ImageMetadataRepository imageMetadataRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final LeaseRepository leaseRepository;
+    private final DataSource dataSource;
+
+    @Value("${storage.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.reconcile.initial-delay-ms:60000}")
+    private long initialDelayMillis;
+
+    @Value("${storage.reconcile.interval-ms:3600000}")
+    private long intervalMillis;
+
+    @Value("${storage.reconcile.page-size:500}")
+    private int pageSize;
+
+    @Value("${storage.reconcile.grace-period-ms:600000}")
+    private long gracePeriodMillis;
+
+    @Value("${storage.reconcile.reprocess-per-second:5}")
+    private double reprocessPerSecond;
+
+    @Value("${storage.reconcile.dry-run:true}")
+    private boolean dryRun;
+
+    // Originals whose thumbnail key is still ahead of the merge cursor, beyond which they are checked one by one
+    @Value("${storage.reconcile.max-pending-thumbnails:10000}")
+    private int maxPendingThumbnails;
+
+    // How long a pass holds the lease without renewing it
+    @Value("${storage.reconcile.lease-ms:300000}")
+    private long leaseMillis;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private volatile boolean supported = true;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile ReconciliationReport lastReport;
+    private ScheduledExecutorService executor;
+
+    public StorageReconciler(StorageService storageService, ImageMetadataRepository imageMetadataRepository,
+                             RabbitTemplate rabbitTemplate, LeaseRepository leaseRepository, DataSource dataSource) {
+        this.storageService = storageService;
+        this.imageMetadataRepository = imageMetadataRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.leaseRepository = leaseRepository;
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    public void init() {
+        supported = isPostgreSql();
+        if (!supported) {
+            log.warn("Storage reconciliation needs PostgreSQL and is disabled on this database");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (enabled && supported && intervalMillis > 0) {
+            executor.scheduleWithFixedDelay(this::runPass, initialDelayMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start a pass in the background. Returns false if a pass is already running.
+     */
+    public boolean trigger() {
+        if (running.get()) {
+            return false;
+        }
+        executor.execute(this::runPass);
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    private void runPass() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!supported) {
+                ReconciliationReport report = new ReconciliationReport();
+                report.setError("Storage reconciliation needs PostgreSQL");
+                lastReport = report;
+                return;
+            }
+            if (!claimLease()) {
+                log.info("Storage reconciliation is running on another instance");
+                return;
+            }
+            try {
+                runClaimedPass();
+            } finally {
+                leaseRepository.release(LEASE_ID, instanceId);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to take or release the storage reconciliation lease", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void runClaimedPass() {
+        Pass pass = new Pass();
+        try {
+            pass.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pass.report.setError("Interrupted");
+        } catch (Exception e) {
+            log.error("Storage reconciliation failed", e);
+            pass.report.setError(e.getMessage());
+        } finally {
+            pass.report.setFinishedAt(Instant.now());
+            lastReport = pass.report;
+        }
+        log.info("Storage reconciliation finished: {}", pass.report);
+    }
+
+    private boolean claimLease() {
+        if (!leaseRepository.existsById(LEASE_ID)) {
+            try {
+                leaseRepository.saveAndFlush(new Lease(LEASE_ID));
+            } catch (DataIntegrityViolationException e) {
+                // Created by another instance meanwhile
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return leaseRepository.claim(LEASE_ID, instanceId, now, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMillis))) > 0;
+    }
+
+    private boolean isPostgreSql() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equals(product);
+        } catch (MetaDataAccessException e) {
+            log.warn("Could not tell which database is in use", e);
+            return false;
+        }
+    }
+
+    /**
+     * State of a single pass
+     */
+    private final class Pass {
+        private final ReconciliationReport report = new ReconciliationReport();
+        private final Instant cutoff = Instant.now().minusMillis(gracePeriodMillis);
+        private final long reprocessIntervalNanos = reprocessPerSecond > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / reprocessPerSecond) : 0;
+        private long nextReprocessNanos = System.nanoTime();
+        private long leaseRenewedNanos = System.nanoTime();
+
+        // Originals still waiting for their thumbnail to come up in the listing, by last possible thumbnail key
+        private final TreeMap<String, PendingThumbnail> pendingThumbnails = new TreeMap<>();
+        private final Map<String, Boolean> recentOriginals = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENT_ORIGINALS;
+            }
+        };
+
+        private final List<ImageMetadata> missingMetadata = new ArrayList<>();
+        private final List<ImageMetadata> orphanedMetadata = new ArrayList<>();
+        private final List<String> orphanedThumbnails = new ArrayList<>();
+
+        void run() throws InterruptedException {
+            report.setStartedAt(Instant.now());
+            report.setDryRun(dryRun);
+
+            Iterator<S3StorageItem> objects = new PageIterator<>(
+                    last -> storageService.listObjects(last != null ? last.getKey() : null, pageSize));
+            Iterator<ImageMetadata> rows = new PageIterator<>(
+                    last -> imageMetadataRepository.findPageOrderedByS3Key(
+                            last != null ? last.getS3Key() : "", last != null ? last.getId() : "", pageSize));
+
+            S3StorageItem object = next(objects);
+            ImageMetadata row = next(rows);
+            while (object != null || row != null) {
+                int order = object == null ? 1 : row == null ? -1 : object.getKey().compareTo(row.getS3Key());
+                if (order < 0) {
+                    visitObject(object, null);
+                    object = next(objects);
+                } else if (order > 0) {
+                    visitOrphanedMetadata(row);
+                    row = next(rows);
+                } else {
+                    visitObject(object, row);
+                    object = next(objects);
+                    row = next(rows);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                renewLease();
+            }
+
+            // Whatever is still pending sorted after the last object listed
+            while (!pendingThumbnails.isEmpty()) {
+                thumbnailMissing(pendingThumbnails.pollFirstEntry().getValue());
+            }
+            flush();
+        }
+
+        // Renewed well before it runs out; a pass that lost it stops before repairing anything more
+        private void renewLease() {
+            if (System.nanoTime() - leaseRenewedNanos < TimeUnit.MILLISECONDS.toNanos(leaseMillis) / 3) {
+                return;
+            }
+            if (!claimLease()) {
+                throw new IllegalStateException("Lost the storage reconciliation lease to another instance");
+            }
+            leaseRenewedNanos = System.nanoTime();
+        }
+
+        private void visitObject(S3StorageItem object, ImageMetadata row) throws InterruptedException {
+            report.setObjectsScanned(report.getObjectsScanned() + 1);
+            if (row != null) {
+                report.setMetadataScanned(report.getMetadataScanned() + 1);
+            }
+
+            // Thumbnails that sort before this key were not listed
+            while (!pendingThumbnails.isEmpty() && pendingThumbnails.firstKey().compareTo(object.getKey()) < 0) {
+                thumbnailMissing(pendingThumbnails.pollFirstEntry().getValue());
+            }
+            String originalKey = StorageUtil.getOriginalKey(object.getKey());
+            if (originalKey != null && pendingThumbnails.remove(pendingKeyOf(originalKey)) != null) {
+                return;
+            }
+
+            String contentType = row != null ? row.getContentType() : null;
+            if (row == null) {
+                if (originalKey != null) {
+                    visitUnpairedThumbnail(object, originalKey);
+                    return;
+                }
+                recentOriginals.put(object.getKey(), Boolean.TRUE);
+                if (isRecent(object.getLastModified())) {
+                    return;
+                }
+                contentType = URLConnection.guessContentTypeFromName(object.getKey());
+                missingMetadata.add(createMetadata(object, contentType));
+                if (missingMetadata.size() >= pageSize) {
+                    flush();
+                }
+            } else {
+                recentOriginals.put(object.getKey(), Boolean.TRUE);
+            }
+
+            if (object.getThumbnailKey() == null && !isRecent(object.getLastModified())
+                    && contentType != null && contentType.startsWith("image/")) {
+                pendingThumbnails.put(pendingKeyOf(object.getKey()), new PendingThumbnail(object, contentType));
+                if (pendingThumbnails.size() > maxPendingThumbnails) {
+                    // Keys between an original and its thumbnail (photo.jpg, photo1.jpg, ..., photo_thumbnail.jpg)
+                    // can keep many pending at once; settle the one furthest ahead of the cursor with direct lookups
+                    PendingThumbnail furthest = pendingThumbnails.pollLastEntry().getValue();
+                    if (!thumbnailExists(furthest.object.getKey())) {
+                        thumbnailMissing(furthest);
+                    }
+                }
+            }
+        }
+
+        /**
+         * A thumbnail-like key with no metadata and no original listed just before it
+         */
+        private void visitUnpairedThumbnail(S3StorageItem object, String originalKey) {
+            if (isRecent(object.getLastModified()) || recentOriginals.containsKey(originalKey)
+                    || storageService.objectExists(originalKey)) {
+                return;
+            }
+            orphanedThumbnails.add(object.getKey());
+            if (orphanedThumbnails.size() >= pageSize) {
+                flush();
+            }
+        }
+
+        private void visitOrphanedMetadata(ImageMetadata row) {
+            report.setMetadataScanned(report.getMetadataScanned() + 1);
+            if (row.getUploadedAt() != null && isRecent(row.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant())) {
+                return;
+            }
+            orphanedMetadata.add(row);
+            if (orphanedMetadata.size() >= pageSize) {
+                flush();
+            }
+        }
+
+        private void thumbnailMissing(PendingThumbnail pending) throws InterruptedException {
+            report.setMissingThumbnails(report.getMissingThumbnails() + 1);
+            if (dryRun) {
+                return;
+            }
+            throttle();
+            S3StorageItem object = pending.object;
+            rabbitTemplate.convertAndSend(IMAGE_PROCESSING_BULK_QUEUE, new ImageProcessingMessage(
+                    object.getKey(), pending.contentType, storageService.getStorageType(), object.getSize(),
+                    ProcessingPriority.BULK));
+            report.setReprocessingQueued(report.getReprocessingQueued() + 1);
+        }
+
+        /**
+         * Apply the repairs collected so far. Each is checked again first, since objects and metadata
+         * may have changed since they were listed.
+         */
+        private void flush() {
+            if (!missingMetadata.isEmpty()) {
+                Set<String> existing = new HashSet<>();
+                for (ImageMetadata metadata : imageMetadataRepository.findByS3KeyIn(keysOf(missingMetadata))) {
+                    existing.add(metadata.getS3Key());
+                }
+                List<ImageMetadata> created = new ArrayList<>();
+                for (ImageMetadata metadata : missingMetadata) {
+                    if (!existing.contains(metadata.getS3Key())) {
+                        created.add(metadata);
+                    }
+                }
+                if (!dryRun) {
+                    imageMetadataRepository.saveAll(created);
+                }
+                report.setMetadataCreated(report.getMetadataCreated() + created.size());
+                missingMetadata.clear();
+            }
+
+            if (!orphanedMetadata.isEmpty()) {
+                List<String> ids = new ArrayList<>();
+                for (ImageMetadata metadata : orphanedMetadata) {
+                    if (!storageService.objectExists(metadata.getS3Key())) {
+                        ids.add(metadata.getId());
+                    }
+                }
+                if (!dryRun && !ids.isEmpty()) {
+                    imageMetadataRepository.deleteAllByIdInBatch(ids);
+                }
+                report.setOrphanedMetadataDeleted(report.getOrphanedMetadataDeleted() + ids.size());
+                orphanedMetadata.clear();
+            }
+
+            if (!orphanedThumbnails.isEmpty()) {
+                if (dryRun) {
+                    report.setOrphanedThumbnailsDeleted(report.getOrphanedThumbnailsDeleted() + orphanedThumbnails.size());
+                } else {
+                    report.setOrphanedThumbnailsDeleted(report.getOrphanedThumbnailsDeleted()
+                            + storageService.deleteObjects(orphanedThumbnails).getDeleted());
+                }
+                orphanedThumbnails.clear();
+            }
+        }
+
+        /**
+         * Space reprocessing messages evenly at the configured rate
+         */
+        private void throttle() throws InterruptedException {
+            long now = System.nanoTime();
+            if (nextReprocessNanos > now) {
+                TimeUnit.NANOSECONDS.sleep(nextReprocessNanos - now);
+                now = nextReprocessNanos;
+            }
+            nextReprocessNanos = now + reprocessIntervalNanos;
+        }
+
+        /**
+         * Pending thumbnails are keyed by the last key the thumbnail may have, so they are only taken for
+         * missing once the listing has passed all of them
+         */
+        private String pendingKeyOf(String originalKey) {
+            List<String> thumbnailKeys = storageService.getThumbnailKeys(originalKey);
+            return thumbnailKeys.get(thumbnailKeys.size() - 1);
+        }
+
+        private boolean thumbnailExists(String originalKey) {
+            for (String thumbnailKey : storageService.getThumbnailKeys(originalKey)) {
+                if (storageService.objectExists(thumbnailKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isRecent(Instant time) {
+            return time != null && time.isAfter(cutoff);
+        }
+    }
+
+    private ImageMetadata createMetadata(S3StorageItem object, String contentType) {
+        ImageMetadata metadata = new ImageMetadata();
+        metadata.setId(UUID.randomUUID().toString());
+        metadata.setFilename(object.getName());
+        metadata.setContentType(contentType != null ? contentType : "application/octet-stream");
+        metadata.setSize(object.getSize());
+        metadata.setS3Key(object.getKey());
+        metadata.setS3Url(storageService.generateUrl(object.getKey()));
+        return metadata;
+    }
+
+    private static List<String> keysOf(List<ImageMetadata> metadata) {
+        List<String> keys = new ArrayList<>(metadata.size());
+        for (ImageMetadata item : metadata) {
+            keys.add(item.getS3Key());
+        }
+        return keys;
+    }
+
+    private static <T> T next(Iterator<T> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static final class PendingThumbnail {
+        private final S3StorageItem object;
+        private final String contentType;
+
+        private PendingThumbnail(S3StorageItem object, String contentType) {
+            this.object = object;
+            this.contentType = contentType;
+        }
+    }
+
+    /**
+     * Iterates over pages fetched one at a time, each starting after the last element of the previous one
+     */
+    private static final class PageIterator<T> implements Iterator<T> {
+        private final Function<T, List<T>> fetchAfter;
+        private List<T> page = Collections.emptyList();
+        private int index;
+        private T last;
+        private boolean exhausted;
+
+        private PageIterator(Function<T, List<T>> fetchAfter) {
+            this.fetchAfter = fetchAfter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < page.size()) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            page = fetchAfter.apply(last);
+            index = 0;
+            exhausted = page.isEmpty();
+            return !exhausted;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = page.get(index++);
+            return last;
+        }
+    }
+}
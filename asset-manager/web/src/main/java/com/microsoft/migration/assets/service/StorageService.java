@@ -1,13 +1,19 @@
 package com.microsoft.migration.assets.service;
 
 import com.microsoft.migration.assets.constants.StorageConstants;
+import com.microsoft.migration.assets.model.BulkDeleteResult;
 import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.LocalFile;
 import com.microsoft.migration.assets.model.S3StorageItem;
+import com.microsoft.migration.assets.util.StorageUtil;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Interface for storage operations that can be implemented by different storage providers
@@ -19,36 +25,83 @@ public interface StorageService {
      * List all objects in storage
      */
     List<S3StorageItem> listObjects();
+
+    /**
+     * List up to {@code limit} objects in key order, starting after the given key (or from the beginning if null)
+     */
+    default List<S3StorageItem> listObjects(String startAfter, int limit) {
+        return listObjects().stream()
+                .sorted(Comparator.comparing(S3StorageItem::getKey))
+                .filter(item -> startAfter == null || item.getKey().compareTo(startAfter) > 0)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Find a single object by key
+     */
+    default Optional<S3StorageItem> findObject(String key) {
+        return listObjects().stream()
+                .filter(item -> item.getKey().equals(key))
+                .findFirst();
+    }
     
     /**
      * Upload file to storage
      */
     void uploadObject(MultipartFile file) throws IOException;
+
+    /**
+     * Store content in storage without publishing a processing message or recording metadata.
+     * Returns the key the object was stored under.
+     */
+    String storeObject(String filename, String contentType, long size, InputStream content) throws IOException;
     
     /**
      * Get object from storage by key
      */
     InputStream getObject(String key) throws IOException;
 
+    /**
+     * Check whether an object exists in storage
+     */
+    boolean objectExists(String key);
+
+    /**
+     * Get the file backing an object when the provider keeps objects on the local file system,
+     * so that it can be served without copying it through user space
+     */
+    default Optional<LocalFile> getLocalFile(String key) throws IOException {
+        return Optional.empty();
+    }
+
     /**
      * Delete object from storage by key
      */
     void deleteObject(String key) throws IOException;
 
+    /**
+     * Delete many objects and their thumbnails from storage, reporting the outcome for each key
+     */
+    BulkDeleteResult deleteObjects(List<String> keys);
+
     /**
      * Get the storage type (s3 or local)
      */
     String getStorageType();
 
     /**
-     * Get the thumbnail key for a given key
+     * Get the thumbnail key for a given key, for a thumbnail in the original's own format
      */
     default String getThumbnailKey(String key) {
-        int dotIndex = key.lastIndexOf('.');
-        if (dotIndex > 0) {
-            return key.substring(0, dotIndex) + "_thumbnail" + key.substring(dotIndex);
-        }
-        return key + "_thumbnail";
+        return StorageUtil.getThumbnailKey(key);
+    }
+
+    /**
+     * Get every key a thumbnail of the given key may have, as its format may differ from the original's
+     */
+    default List<String> getThumbnailKeys(String key) {
+        return StorageUtil.getThumbnailKeys(key);
     }
 
     /**
@@ -0,0 +1,319 @@
+package com.microsoft.migration.assets.service;
+
+import com.microsoft.migration.assets.model.BackfillJob;
+import com.microsoft.migration.assets.model.ImageMetadata;
+import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.ProcessingPriority;
+import com.microsoft.migration.assets.repository.BackfillJobRepository;
+import com.microsoft.migration.assets.repository.ImageMetadataRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.microsoft.migration.assets.config.RabbitConfig.IMAGE_PROCESSING_BULK_QUEUE;
+
+/**
+ * Re-queues every image for thumbnail processing, for instance after the worker's thumbnail size or quality changed.
+ *
+ * Metadata is paged through in key order and messages go to the bulk queue at a fixed rate, so the worker keeps
+ * serving fresh uploads first. One job runs at a time; its cursor is saved after every page, and a job that was
+ * running when the application stopped is resumed on the next start.
+ *
+ * With several instances sharing the database, a running job is leased to the instance that runs it and the lease
+ * is renewed after each page. An instance only resumes jobs it can claim, that is jobs whose lease was released
+ * on shutdown or has run out, so a job is never run by two instances at once. It looks for them on start and
+ * again every lease period, which picks up the jobs of an instance that died without releasing its lease.
+ * Progress and the end of a run are saved with updates that only apply while the instance still owns the running
+ * job, so a pause from another instance is never overwritten.
+ */
+@Slf4j
+@Service
+public class ThumbnailBackfillService {
+
+    private final ImageMetadataRepository imageMetadataRepository;
+    private final BackfillJobRepository backfillJobRepository;
+    private final StorageService storageService;
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${storage.backfill.page-size:500}")
+    private int pageSize;
+
+    @Value("${storage.backfill.rate-per-second:50}")
+    private double defaultRatePerSecond;
+
+    @Value("${storage.batch.confirm-timeout-ms:30000}")
+    private long confirmTimeoutMillis;
+
+    @Value("${storage.backfill.lease-ms:300000}")
+    private long leaseMillis;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private ExecutorService executor;
+    private ScheduledExecutorService takeover;
+    private String activeJobId;
+    private volatile boolean pauseRequested;
+
+    public ThumbnailBackfillService(ImageMetadataRepository imageMetadataRepository,
+                                    BackfillJobRepository backfillJobRepository,
+                                    StorageService storageService,
+                                    RabbitTemplate rabbitTemplate) {
+        this.imageMetadataRepository = imageMetadataRepository;
+        this.backfillJobRepository = backfillJobRepository;
+        this.storageService = storageService;
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        takeover = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-backfill-takeover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        takeover.scheduleWithFixedDelay(this::takeOverExpiredJobs, leaseMillis, leaseMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // The job stays RUNNING, so it is resumed on the next start; releasing the lease lets any instance take it
+        takeover.shutdownNow();
+        executor.shutdownNow();
+        String jobId;
+        synchronized (this) {
+            jobId = activeJobId;
+        }
+        if (jobId != null) {
+            try {
+                backfillJobRepository.releaseLease(jobId, instanceId);
+            } catch (Exception e) {
+                log.warn("Could not release the lease on thumbnail backfill {}", jobId, e);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterruptedJobs() {
+        for (BackfillJob running : backfillJobRepository.findByStatus(BackfillJob.Status.RUNNING)) {
+            if (running.getId().equals(activeJobId) || backfillJobRepository.claim(running.getId(),
+                    BackfillJob.Status.RUNNING, instanceId, LocalDateTime.now(), leaseUntil(running)) == 0) {
+                // Running here already, or on another instance
+                continue;
+            }
+            BackfillJob job = getJob(running.getId());
+            if (activeJobId == null) {
+                log.info("Resuming thumbnail backfill {} after key {}", job.getId(), job.getLastKey());
+                launch(job);
+            } else {
+                backfillJobRepository.finish(job.getId(), BackfillJob.Status.RUNNING, instanceId,
+                        BackfillJob.Status.PAUSED, null, LocalDateTime.now());
+            }
+        }
+    }
+
+    private void takeOverExpiredJobs() {
+        try {
+            resumeInterruptedJobs();
+        } catch (Exception e) {
+            log.warn("Could not look for thumbnail backfills to take over", e);
+        }
+    }
+
+    public synchronized BackfillJob start(Double ratePerSecond) {
+        if (activeJobId != null) {
+            throw new IllegalStateException("Backfill " + activeJobId + " is already running");
+        }
+        BackfillJob job = new BackfillJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setStatus(BackfillJob.Status.RUNNING);
+        job.setRatePerSecond(ratePerSecond != null ? ratePerSecond : defaultRatePerSecond);
+        job.setTotal(imageMetadataRepository.count());
+        job.setLastKey("");
+        job.setLastId("");
+        job.setOwner(instanceId);
+        job.setLeaseExpiresAt(leaseUntil(job));
+        job = backfillJobRepository.save(job);
+        launch(job);
+        return job;
+    }
+
+    public synchronized BackfillJob pause(String id) {
+        BackfillJob job = getJob(id);
+        if (id.equals(activeJobId)) {
+            // The job records itself as paused when it finishes its current page
+            pauseRequested = true;
+        } else if (job.getStatus() == BackfillJob.Status.RUNNING) {
+            backfillJobRepository.pause(id, BackfillJob.Status.RUNNING, BackfillJob.Status.PAUSED, LocalDateTime.now());
+            job = getJob(id);
+        }
+        return job;
+    }
+
+    public synchronized BackfillJob resume(String id, Double ratePerSecond) {
+        BackfillJob job = getJob(id);
+        if (id.equals(activeJobId) || job.getStatus() == BackfillJob.Status.COMPLETED) {
+            return job;
+        }
+        if (activeJobId != null) {
+            throw new IllegalStateException("Backfill " + activeJobId + " is already running");
+        }
+        // A paused job stays leased until the instance that ran it has stopped, so two resumes can't both win
+        if (backfillJobRepository.claim(id, job.getStatus(), instanceId, LocalDateTime.now(), leaseUntil(job)) == 0) {
+            throw new IllegalStateException("Backfill " + id + " is leased to another instance");
+        }
+        job = getJob(id);
+        job.setStatus(BackfillJob.Status.RUNNING);
+        job.setError(null);
+        if (ratePerSecond != null) {
+            job.setRatePerSecond(ratePerSecond);
+        }
+        job.setOwner(instanceId);
+        job.setLeaseExpiresAt(leaseUntil(job));
+        job = backfillJobRepository.save(job);
+        launch(job);
+        return job;
+    }
+
+    public Optional<BackfillJob> findJob(String id) {
+        return backfillJobRepository.findById(id);
+    }
+
+    public List<BackfillJob> listJobs() {
+        return backfillJobRepository.findAllByOrderByCreatedAtDesc();
+    }
+
+    private BackfillJob getJob(String id) {
+        return backfillJobRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Backfill not found: " + id));
+    }
+
+    /**
+     * Long enough for at least two pages at the job's rate, so a slow job keeps its lease between renewals
+     */
+    private LocalDateTime leaseUntil(BackfillJob job) {
+        long pageMillis = job.getRatePerSecond() > 0 ? (long) (pageSize * 1000 / job.getRatePerSecond()) : 0;
+        return LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(
+                Math.max(leaseMillis, 2 * (pageMillis + confirmTimeoutMillis))));
+    }
+
+    private void launch(BackfillJob job) {
+        activeJobId = job.getId();
+        pauseRequested = false;
+        executor.execute(() -> run(job));
+    }
+
+    private void run(BackfillJob job) {
+        boolean abandoned = false;
+        try {
+            long intervalNanos = job.getRatePerSecond() > 0
+                    ? (long) (TimeUnit.SECONDS.toNanos(1) / job.getRatePerSecond()) : 0;
+            long nextNanos = System.nanoTime();
+            while (true) {
+                if (pauseRequested) {
+                    job.setStatus(BackfillJob.Status.PAUSED);
+                    break;
+                }
+                List<ImageMetadata> page = imageMetadataRepository.findPageOrderedByS3Key(
+                        job.getLastKey(), job.getLastId(), pageSize);
+                if (page.isEmpty()) {
+                    job.setStatus(BackfillJob.Status.COMPLETED);
+                    break;
+                }
+
+                nextNanos = publish(page, intervalNanos, nextNanos);
+
+                ImageMetadata last = page.get(page.size() - 1);
+                long processed = job.getProcessed() + page.size();
+                LocalDateTime leaseUntil = leaseUntil(job);
+                if (backfillJobRepository.saveProgress(job.getId(), BackfillJob.Status.RUNNING, instanceId,
+                        last.getS3Key(), last.getId(), processed, LocalDateTime.now(), leaseUntil) == 0) {
+                    // Paused from another instance, or taken over; its state is no longer ours to save
+                    log.info("Thumbnail backfill {} stopped here, as it is no longer leased to this instance", job.getId());
+                    abandoned = true;
+                    return;
+                }
+                job.setLeaseExpiresAt(leaseUntil);
+                job.setLastKey(last.getS3Key());
+                job.setLastId(last.getId());
+                job.setProcessed(processed);
+            }
+            log.info("Thumbnail backfill {} {} after {} images", job.getId(), job.getStatus(), job.getProcessed());
+        } catch (InterruptedException e) {
+            // Shutting down; leave the job RUNNING so it resumes on the next start
+            Thread.currentThread().interrupt();
+            abandoned = true;
+        } catch (Exception e) {
+            log.error("Thumbnail backfill {} failed", job.getId(), e);
+            job.setStatus(BackfillJob.Status.FAILED);
+            job.setError(e.getMessage());
+        } finally {
+            synchronized (this) {
+                if (!abandoned && backfillJobRepository.finish(job.getId(), BackfillJob.Status.RUNNING, instanceId,
+                        job.getStatus(), job.getError(), LocalDateTime.now()) == 0) {
+                    log.info("Thumbnail backfill {} was paused or taken over before it could record {}",
+                            job.getId(), job.getStatus());
+                }
+                activeJobId = null;
+            }
+        }
+    }
+
+    /**
+     * Publish a page of messages at the job's rate, waiting for the broker to confirm them before the
+     * cursor moves past them. Returns when the next message may be sent.
+     */
+    private long publish(List<ImageMetadata> page, long intervalNanos, long nextNanos) throws InterruptedException {
+        List<ImageProcessingMessage> messages = new ArrayList<>(page.size());
+        for (ImageMetadata metadata : page) {
+            if (metadata.getContentType() != null && metadata.getContentType().startsWith("image/")) {
+                messages.add(new ImageProcessingMessage(metadata.getS3Key(), metadata.getContentType(),
+                        storageService.getStorageType(), metadata.getSize() != null ? metadata.getSize() : 0,
+                        ProcessingPriority.BULK));
+            }
+        }
+
+        long[] next = {nextNanos};
+        Boolean completed = rabbitTemplate.invoke(operations -> {
+            for (ImageProcessingMessage message : messages) {
+                long now = System.nanoTime();
+                if (next[0] > now) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(next[0] - now);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    now = next[0];
+                }
+                next[0] = now + intervalNanos;
+                operations.convertAndSend(IMAGE_PROCESSING_BULK_QUEUE, message);
+            }
+            operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(completed)) {
+            throw new InterruptedException();
+        }
+        return next[0];
+    }
+}
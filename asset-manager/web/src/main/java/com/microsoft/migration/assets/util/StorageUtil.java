@@ -0,0 +1,85 @@
+package com.microsoft.migration.assets.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thumbnail key naming, shared with the worker module, which writes the thumbnails; keep the two in sync.
+ *
+ * A thumbnail is named after its original ({@code photo.jpg} has {@code photo_thumbnail.jpg}). When the worker
+ * encodes it in another format than the original's extension names, the thumbnail's own extension is appended
+ * ({@code photo_thumbnail.gif.png}), so the key still leads back to the original.
+ */
+public final class StorageUtil {
+
+    private static final String THUMBNAIL_SUFFIX = "_thumbnail";
+
+    // Extensions of the formats the worker encodes thumbnails in
+    private static final String[] THUMBNAIL_EXTENSIONS = {".jpg", ".png"};
+
+    private StorageUtil() {
+    }
+
+    /**
+     * Get the thumbnail key for a given key, for a thumbnail in the original's own format
+     */
+    public static String getThumbnailKey(String key) {
+        int dotIndex = key.lastIndexOf('.');
+        if (dotIndex > 0) {
+            return key.substring(0, dotIndex) + THUMBNAIL_SUFFIX + key.substring(dotIndex);
+        }
+        return key + THUMBNAIL_SUFFIX;
+    }
+
+    /**
+     * Get every key a thumbnail of the given key may have, in key order
+     */
+    public static List<String> getThumbnailKeys(String key) {
+        String thumbnailKey = getThumbnailKey(key);
+        List<String> keys = new ArrayList<>(THUMBNAIL_EXTENSIONS.length + 1);
+        keys.add(thumbnailKey);
+        String extension = getExtension(key);
+        if (!extension.isEmpty()) {
+            for (String thumbnailExtension : THUMBNAIL_EXTENSIONS) {
+                if (!formatOf(thumbnailExtension).equals(formatOf(extension))) {
+                    keys.add(thumbnailKey + thumbnailExtension);
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Get the key of the original a thumbnail key belongs to, or null if the key is not a thumbnail's
+     */
+    public static String getOriginalKey(String key) {
+        String original = stripThumbnailSuffix(key);
+        if (original == null && (key.endsWith(".jpg") || key.endsWith(".png"))) {
+            // A thumbnail encoded in another format than its original's
+            original = stripThumbnailSuffix(key.substring(0, key.length() - 4));
+        }
+        return original;
+    }
+
+    /**
+     * Get file extension from a key or filename
+     */
+    public static String getExtension(String filename) {
+        int dotIndex = filename.lastIndexOf('.');
+        return dotIndex > 0 ? filename.substring(dotIndex) : "";
+    }
+
+    private static String stripThumbnailSuffix(String key) {
+        int dotIndex = key.lastIndexOf('.');
+        String name = dotIndex > 0 ? key.substring(0, dotIndex) : key;
+        if (name.endsWith(THUMBNAIL_SUFFIX) && name.length() > THUMBNAIL_SUFFIX.length()) {
+            return name.substring(0, name.length() - THUMBNAIL_SUFFIX.length()) + getExtension(key);
+        }
+        return null;
+    }
+
+    private static String formatOf(String extension) {
+        String lower = extension.toLowerCase();
+        return ".jpg".equals(lower) || ".jpeg".equals(lower) ? "jpeg" : lower.substring(1);
+    }
+}
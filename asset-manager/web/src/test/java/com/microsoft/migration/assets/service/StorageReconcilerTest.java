@@ -0,0 +1,240 @@
+package com.microsoft.migration.assets.service;
+
+import com.microsoft.migration.assets.model.ImageMetadata;
+import com.microsoft.migration.assets.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.model.ProcessingPriority;
+import com.microsoft.migration.assets.model.ReconciliationReport;
+import com.microsoft.migration.assets.model.S3StorageItem;
+import com.microsoft.migration.assets.repository.ImageMetadataRepository;
+import com.microsoft.migration.assets.repository.LeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.microsoft.migration.assets.config.RabbitConfig.IMAGE_PROCESSING_BULK_QUEUE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StorageReconcilerTest {
+
+    // Older than the grace period, so nothing is skipped as a possible upload in progress
+    private static final Instant OLD = Instant.now().minus(1, ChronoUnit.DAYS);
+
+    @Mock
+    private StorageService storageService;
+
+    @Mock
+    private ImageMetadataRepository imageMetadataRepository;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private LeaseRepository leaseRepository;
+
+    @InjectMocks
+    private StorageReconciler storageReconciler;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(storageReconciler, "pageSize", 500);
+        ReflectionTestUtils.setField(storageReconciler, "gracePeriodMillis", 600000L);
+        ReflectionTestUtils.setField(storageReconciler, "reprocessPerSecond", 0.0);
+        ReflectionTestUtils.setField(storageReconciler, "maxPendingThumbnails", 10000);
+        ReflectionTestUtils.setField(storageReconciler, "leaseMillis", 300000L);
+        ReflectionTestUtils.setField(storageReconciler, "dryRun", false);
+        lenient().when(leaseRepository.existsById(anyString())).thenReturn(true);
+        lenient().when(leaseRepository.claim(anyString(), anyString(), any(), any())).thenReturn(1);
+
+        // Paging and key naming come from the interface defaults
+        lenient().when(storageService.listObjects(nullable(String.class), anyInt())).thenCallRealMethod();
+        lenient().when(storageService.getThumbnailKeys(anyString())).thenCallRealMethod();
+        lenient().when(storageService.generateUrl(anyString())).thenCallRealMethod();
+    }
+
+    @Test
+    void createsMetadataForObjectWithoutAny() {
+        // Arrange
+        givenObjects(object("notes.txt"));
+        givenRows();
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ImageMetadata>> created = ArgumentCaptor.forClass(List.class);
+        verify(imageMetadataRepository).saveAll(created.capture());
+        assertEquals(1, created.getValue().size());
+        assertEquals("notes.txt", created.getValue().get(0).getS3Key());
+        assertEquals(1, report.getMetadataCreated());
+        assertNull(report.getError());
+    }
+
+    @Test
+    void deletesMetadataWhoseObjectIsGone() {
+        // Arrange
+        givenObjects();
+        givenRows(row("gone.jpg", "image/jpeg"));
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        verify(storageService).objectExists("gone.jpg");
+        verify(imageMetadataRepository).deleteAllByIdInBatch(Collections.singletonList("id-gone.jpg"));
+        assertEquals(1, report.getOrphanedMetadataDeleted());
+    }
+
+    @Test
+    void queuesImageWhoseThumbnailIsMissing() {
+        // Arrange
+        givenObjects(object("photo.jpg"));
+        givenRows(row("photo.jpg", "image/jpeg"));
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        ArgumentCaptor<ImageProcessingMessage> message = ArgumentCaptor.forClass(ImageProcessingMessage.class);
+        verify(rabbitTemplate).convertAndSend(eq(IMAGE_PROCESSING_BULK_QUEUE), message.capture());
+        assertEquals("photo.jpg", message.getValue().getKey());
+        assertEquals(ProcessingPriority.BULK, message.getValue().getPriority());
+        assertEquals(1, report.getMissingThumbnails());
+        assertEquals(1, report.getReprocessingQueued());
+    }
+
+    @Test
+    void pairsThumbnailListedOnALaterPage() {
+        // Arrange
+        ReflectionTestUtils.setField(storageReconciler, "pageSize", 2);
+        givenObjects(object("photo.jpg"), object("photo1.txt"), object("photo_thumbnail.jpg"));
+        givenRows(row("photo.jpg", "image/jpeg"), row("photo1.txt", "text/plain"));
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
+        verify(storageService, never()).deleteObjects(anyList());
+        assertEquals(3, report.getObjectsScanned());
+        assertEquals(2, report.getMetadataScanned());
+        assertEquals(0, report.getMissingThumbnails());
+    }
+
+    @Test
+    void pairsThumbnailEncodedInAnotherFormat() {
+        // Arrange
+        givenObjects(object("logo.jpg"), object("logo_thumbnail.jpg.png"));
+        givenRows(row("logo.jpg", "image/jpeg"));
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), any(Object.class));
+        verify(storageService, never()).deleteObjects(anyList());
+        assertEquals(0, report.getMissingThumbnails());
+    }
+
+    @Test
+    void looksUpThumbnailsBeyondThePendingCap() {
+        // Arrange
+        ReflectionTestUtils.setField(storageReconciler, "maxPendingThumbnails", 1);
+        givenObjects(object("photo.jpg"), object("photo0.jpg"));
+        givenRows(row("photo.jpg", "image/jpeg"), row("photo0.jpg", "image/jpeg"));
+        when(storageService.objectExists("photo_thumbnail.jpg")).thenReturn(true);
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        ArgumentCaptor<ImageProcessingMessage> message = ArgumentCaptor.forClass(ImageProcessingMessage.class);
+        verify(rabbitTemplate).convertAndSend(eq(IMAGE_PROCESSING_BULK_QUEUE), message.capture());
+        assertEquals("photo0.jpg", message.getValue().getKey());
+        assertEquals(1, report.getMissingThumbnails());
+    }
+
+    @Test
+    void skipsPassWhileAnotherInstanceHoldsTheLease() {
+        // Arrange
+        when(leaseRepository.claim(anyString(), anyString(), any(), any())).thenReturn(0);
+
+        // Act
+        ReconciliationReport report = runPass();
+
+        // Assert
+        assertNull(report);
+        verifyNoInteractions(storageService, imageMetadataRepository, rabbitTemplate);
+        verify(leaseRepository, never()).release(anyString(), anyString());
+    }
+
+    @Test
+    void releasesTheLeaseAfterAPass() {
+        // Arrange
+        givenObjects();
+        givenRows();
+
+        // Act
+        runPass();
+
+        // Assert
+        verify(leaseRepository).release(eq("storage-reconciler"), anyString());
+    }
+
+    private ReconciliationReport runPass() {
+        ReflectionTestUtils.invokeMethod(storageReconciler, "runPass");
+        return storageReconciler.getLastReport();
+    }
+
+    private void givenObjects(S3StorageItem... objects) {
+        when(storageService.listObjects()).thenReturn(Arrays.asList(objects));
+    }
+
+    private void givenRows(ImageMetadata... rows) {
+        // Rows are given in key order, as the query returns them
+        when(imageMetadataRepository.findPageOrderedByS3Key(anyString(), anyString(), anyInt())).thenAnswer(invocation -> {
+            String afterKey = invocation.getArgument(0);
+            int limit = invocation.getArgument(2);
+            return Arrays.stream(rows)
+                    .filter(row -> row.getS3Key().compareTo(afterKey) > 0)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    private static S3StorageItem object(String key) {
+        return new S3StorageItem(key, key, 1024, OLD, OLD, null, null, null, null, null);
+    }
+
+    private static ImageMetadata row(String key, String contentType) {
+        ImageMetadata metadata = new ImageMetadata();
+        metadata.setId("id-" + key);
+        metadata.setS3Key(key);
+        metadata.setContentType(contentType);
+        metadata.setUploadedAt(LocalDateTime.now().minusDays(1));
+        return metadata;
+    }
+}
@@ -0,0 +1,27 @@
+package com.microsoft.migration.assets.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ShardedStorageLayoutTest {
+
+    @TempDir
+    Path root;
+
+    // The worker module has its own copy of this mapping and pins the same paths; a change to either copy
+    // must change both, or files written by one module can't be found by the other
+    @Test
+    void mappingIsPinnedForBothModules() {
+        ShardedStorageLayout layout = new ShardedStorageLayout(root, 2, 2);
+
+        assertEquals(root.resolve("72/ac/photo.jpg"), layout.resolve("photo.jpg"));
+        assertEquals(root.resolve("72/ac/photo_thumbnail.jpg"), layout.resolve("photo_thumbnail.jpg"));
+        assertEquals(root.resolve("f1/21/logo_thumbnail.jpg.png"), layout.resolve("logo_thumbnail.jpg.png"));
+        assertEquals(root.resolve("b1/40/my photo (1).jpg"), layout.resolve("my photo (1).jpg"));
+        assertEquals(root.resolve("43/58/notes"), layout.resolve("notes"));
+    }
+}
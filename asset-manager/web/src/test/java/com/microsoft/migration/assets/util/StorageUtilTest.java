@@ -0,0 +1,38 @@
+package com.microsoft.migration.assets.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Pins the keys the worker's StorageUtil writes thumbnails under; keep the expected keys the same in both tests
+public class StorageUtilTest {
+
+    @Test
+    void thumbnailKeysCoverEveryFormatTheWorkerWrites() {
+        assertEquals(Arrays.asList("photo_thumbnail.jpg", "photo_thumbnail.jpg.png"),
+                StorageUtil.getThumbnailKeys("photo.jpg"));
+        assertEquals(Arrays.asList("scan_thumbnail.png", "scan_thumbnail.png.jpg"),
+                StorageUtil.getThumbnailKeys("scan.png"));
+        assertEquals(Arrays.asList("anim_thumbnail.gif", "anim_thumbnail.gif.jpg", "anim_thumbnail.gif.png"),
+                StorageUtil.getThumbnailKeys("anim.gif"));
+        assertEquals(Arrays.asList("photo_thumbnail"), StorageUtil.getThumbnailKeys("photo"));
+    }
+
+    @Test
+    void originalKeyIsFoundFromEitherThumbnailKey() {
+        assertEquals("photo.jpg", StorageUtil.getOriginalKey("photo_thumbnail.jpg"));
+        assertEquals("logo.jpg", StorageUtil.getOriginalKey("logo_thumbnail.jpg.png"));
+        assertEquals("anim.gif", StorageUtil.getOriginalKey("anim_thumbnail.gif.png"));
+        assertEquals("photo", StorageUtil.getOriginalKey("photo_thumbnail"));
+    }
+
+    @Test
+    void originalKeysAreNotThumbnails() {
+        assertNull(StorageUtil.getOriginalKey("photo.jpg"));
+        assertNull(StorageUtil.getOriginalKey("photo.jpg.png"));
+        assertNull(StorageUtil.getOriginalKey("_thumbnail.jpg"));
+    }
+}
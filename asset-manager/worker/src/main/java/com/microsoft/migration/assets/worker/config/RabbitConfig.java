@@ -7,6 +7,7 @@ import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFacto
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +15,12 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class RabbitConfig {
     public static final String IMAGE_PROCESSING_QUEUE = "image-processing";
+    // Bulk work such as thumbnail backfills, consumed separately so it cannot delay fresh uploads
+    public static final String IMAGE_PROCESSING_BULK_QUEUE = "image-processing.bulk";
+
+    // How long a stopping container waits for messages being processed, see WorkerLifecycleManager
+    @Value("${thumbnail.shutdown.drain-timeout-ms:30000}")
+    private long drainTimeoutMillis;
 
     @Bean
     public Queue imageProcessingQueue() {
@@ -21,6 +28,12 @@ public class RabbitConfig {
         .build();
     }
 
+    @Bean
+    public Queue imageProcessingBulkQueue() {
+        return QueueBuilder.durable(IMAGE_PROCESSING_BULK_QUEUE)
+        .build();
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -30,11 +43,32 @@ public class RabbitConfig {
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
             ConnectionFactory connectionFactory,
             SimpleRabbitListenerContainerFactoryConfigurer configurer) {
+        return newContainerFactory(connectionFactory, configurer);
+    }
+
+    /**
+     * Container factory for the bulk lane, with its own prefetch so that bulk consumers do not hold
+     * more messages than they can work through
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory bulkListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            @Value("${thumbnail.bulk.prefetch:1}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = newContainerFactory(connectionFactory, configurer);
+        factory.setPrefetchCount(prefetch);
+        return factory;
+    }
+
+    private SimpleRabbitListenerContainerFactory newContainerFactory(
+            ConnectionFactory connectionFactory,
+            SimpleRabbitListenerContainerFactoryConfigurer configurer) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         configurer.configure(factory, connectionFactory);
         factory.setMessageConverter(jsonMessageConverter());
         factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setContainerCustomizer(container -> container.setShutdownTimeout(drainTimeoutMillis));
         return factory;
     }
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.microsoft.migration.assets.worker.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * What could be read from the header of an image file without decoding it
+ */
+@Data
+@NoArgsConstructor
+public class ImageHeader {
+    private Integer width;   // as stored, before applying the orientation
+    private Integer height;
+    private int orientation = 1; // EXIF orientation, 1 (upright) to 8
+    private String cameraMake;
+    private String cameraModel;
+    private LocalDateTime capturedAt;
+
+    public boolean hasDimensions() {
+        return width != null && height != null;
+    }
+
+    /**
+     * Whether the orientation swaps width and height (a quarter turn, possibly mirrored)
+     */
+    public boolean isTransposed() {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    public Integer getDisplayWidth() {
+        return isTransposed() ? height : width;
+    }
+
+    public Integer getDisplayHeight() {
+        return isTransposed() ? width : height;
+    }
+}
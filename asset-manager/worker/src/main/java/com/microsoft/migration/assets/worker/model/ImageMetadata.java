@@ -1,5 +1,6 @@
 package com.microsoft.migration.assets.worker.model;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.PrePersist;
@@ -22,6 +23,16 @@ public class ImageMetadata {
     private String s3Url;
     private String thumbnailKey;
     private String thumbnailUrl;
+    private String thumbnailFormat;  // format the thumbnail was encoded in, which may differ from the original's
+    private Float thumbnailQuality;  // JPEG quality chosen for the thumbnail, null if lossless
+    private Long thumbnailSize;
+    @Column(length = 4096)
+    private String placeholder;      // data URI of a tiny preview, inlined in listings
+    private Integer width;   // as displayed, after applying the EXIF orientation
+    private Integer height;
+    private String cameraMake;
+    private String cameraModel;
+    private LocalDateTime capturedAt;
     private LocalDateTime uploadedAt;
     private LocalDateTime lastModified;
 
@@ -12,4 +12,5 @@ public class ImageProcessingMessage {
     private String contentType;
     private String storageType; // "s3" or "local"
     private long size;
+    private ProcessingPriority priority; // null in messages from before lanes existed, treated as INTERACTIVE
 }
\ No newline at end of file
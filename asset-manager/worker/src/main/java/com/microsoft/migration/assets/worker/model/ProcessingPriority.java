@@ -0,0 +1,10 @@
+package com.microsoft.migration.assets.worker.model;
+
+/**
+ * Processing lane for an image. Interactive work (an image a user just uploaded) is consumed ahead of
+ * bulk work (large imports, backfills and reconciliation), so bulk load cannot delay fresh thumbnails.
+ */
+public enum ProcessingPriority {
+    INTERACTIVE,
+    BULK
+}
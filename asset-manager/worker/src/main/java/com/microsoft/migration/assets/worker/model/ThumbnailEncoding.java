@@ -0,0 +1,19 @@
+package com.microsoft.migration.assets.worker.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How a thumbnail was encoded, as chosen by the encoding policy
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThumbnailEncoding {
+    private String format;      // "jpeg" or "png"
+    private String contentType;
+    private Float quality;      // JPEG quality, null for lossless formats
+    private long size;          // encoded size in bytes
+    private String placeholder; // tiny blurry preview as a data URI, shown until the thumbnail loads
+}
@@ -1,30 +1,95 @@
 package com.microsoft.migration.assets.worker.service;
 
+import com.microsoft.migration.assets.worker.model.ImageHeader;
+import com.microsoft.migration.assets.worker.model.ImageMetadata;
 import com.microsoft.migration.assets.worker.model.ImageProcessingMessage;
+import com.microsoft.migration.assets.worker.model.ThumbnailEncoding;
+import com.microsoft.migration.assets.worker.util.ImageHeaderParser;
 import com.microsoft.migration.assets.worker.util.StorageUtil;
 import com.rabbitmq.client.Channel;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.Header;
 
 import javax.imageio.ImageIO;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 
+import static com.microsoft.migration.assets.worker.config.RabbitConfig.IMAGE_PROCESSING_BULK_QUEUE;
 import static com.microsoft.migration.assets.worker.config.RabbitConfig.IMAGE_PROCESSING_QUEUE;
 
 @Slf4j
 public abstract class AbstractFileProcessingService implements FileProcessor {
 
-    @RabbitListener(queues = IMAGE_PROCESSING_QUEUE)
+    // Largest thumbnail width or height in pixels
+    @Value("${thumbnail.max-dimension:600}")
+    protected int maxDimension = 600;
+
+    @Autowired
+    private ThumbnailEncodingPolicy encodingPolicy;
+
+    @Autowired
+    private WorkerLifecycleManager lifecycleManager;
+
+    // Bytes fetched to read the header; EXIF segments of phone photos fit comfortably
+    @Value("${thumbnail.header-bytes:65536}")
+    protected int headerBytes = 65536;
+
+    /**
+     * Consume the interactive lane: images users just uploaded. Has more consumers than the bulk lane.
+     */
+    @RabbitListener(queues = IMAGE_PROCESSING_QUEUE, concurrency = "${thumbnail.interactive.concurrency:4}")
     public void processImage(final ImageProcessingMessage message, 
                            Channel channel, 
                            @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        process(message, channel, deliveryTag);
+    }
+
+    /**
+     * Consume the bulk lane: imports, backfills and reconciliation. Its few consumers bound the share of the
+     * worker bulk work can take, however deep its queue, so interactive messages never wait behind it.
+     */
+    @RabbitListener(queues = IMAGE_PROCESSING_BULK_QUEUE, concurrency = "${thumbnail.bulk.concurrency:1}",
+            containerFactory = "bulkListenerContainerFactory")
+    public void processBulkImage(final ImageProcessingMessage message,
+                                 Channel channel,
+                                 @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
+        process(message, channel, deliveryTag);
+    }
+
+    private void process(final ImageProcessingMessage message,
+                         Channel channel,
+                         long deliveryTag) {
+        if (!lifecycleManager.tryBegin()) {
+            // Shutting down: hand the message back untouched, for another worker to pick up right away
+            try {
+                channel.basicReject(deliveryTag, true);
+                log.debug("Message requeued during shutdown: {}", message.getKey());
+            } catch (IOException e) {
+                log.error("Error requeueing message during shutdown: {}", message.getKey(), e);
+            }
+            return;
+        }
+        try {
+            processClaimed(message, channel, deliveryTag);
+        } finally {
+            lifecycleManager.end();
+        }
+    }
+
+    private void processClaimed(final ImageProcessingMessage message,
+                                Channel channel,
+                                long deliveryTag) {
         boolean processingSuccess = false;
         Path tempDir = null;
         Path originalFile = null;
@@ -33,21 +98,38 @@ public abstract class AbstractFileProcessingService implements FileProcessor {
         try {
             log.info("Processing image: {}", message.getKey());
 
-            tempDir = Files.createTempDirectory("image-processing");
+            tempDir = lifecycleManager.createWorkDirectory();
             originalFile = tempDir.resolve("original" + StorageUtil.getExtension(message.getKey()));
             thumbnailFile = tempDir.resolve("thumbnail" + StorageUtil.getExtension(message.getKey()));
 
             // Only process if message matches our storage type
             if (message.getStorageType().equals(getStorageType())) {
+                // Read the header first, so dimensions are recorded before the whole original is transferred
+                ImageHeader header = readHeader(message.getKey());
+                if (header.hasDimensions()) {
+                    recordImageHeader(message.getKey(), header);
+                }
+
                 // Download original file
                 downloadOriginal(message.getKey(), originalFile);
+                if (!header.hasDimensions()) {
+                    // The header did not fit in the ranged read; parse it from the downloaded original
+                    try (InputStream in = Files.newInputStream(originalFile)) {
+                        header = ImageHeaderParser.parse(in);
+                    }
+                    recordImageHeader(message.getKey(), header);
+                }
 
-                // Generate thumbnail
-                generateThumbnail(originalFile, thumbnailFile);
+                // Generate thumbnail, turned upright as the camera recorded
+                ThumbnailEncoding encoding = generateThumbnail(originalFile, thumbnailFile, header.getOrientation());
 
-                // Upload thumbnail
-                String thumbnailKey = StorageUtil.getThumbnailKey(message.getKey());
-                uploadThumbnail(thumbnailFile, thumbnailKey, message.getContentType());
+                // Upload thumbnail under a key with the extension of the format it was encoded in
+                String thumbnailKey = StorageUtil.getThumbnailKey(message.getKey(), encoding.getFormat());
+                uploadThumbnail(thumbnailFile, thumbnailKey, encoding.getContentType());
+                String previousKey = recordThumbnail(message.getKey(), thumbnailKey, encoding);
+                if (previousKey != null && !previousKey.equals(thumbnailKey)) {
+                    deleteStaleThumbnail(previousKey);
+                }
 
                 log.info("Successfully processed image: {}", message.getKey());
 
@@ -92,7 +174,67 @@ public abstract class AbstractFileProcessingService implements FileProcessor {
     
     protected abstract String generateUrl(String key);
 
-    protected void generateThumbnail(Path input, Path output) throws IOException {
+    /**
+     * Apply an update to the metadata of an original, if it has any
+     */
+    protected abstract void updateMetadata(String originalKey, Consumer<ImageMetadata> update);
+
+    /**
+     * Record the thumbnail and how it was encoded in the original's metadata, returning the key of the
+     * thumbnail it recorded before, if any
+     */
+    protected String recordThumbnail(String originalKey, String thumbnailKey, ThumbnailEncoding encoding) {
+        String[] previousKey = new String[1];
+        updateMetadata(originalKey, metadata -> {
+            previousKey[0] = metadata.getThumbnailKey();
+            metadata.setThumbnailKey(thumbnailKey);
+            metadata.setThumbnailUrl(generateUrl(thumbnailKey));
+            metadata.setThumbnailFormat(encoding.getFormat());
+            metadata.setThumbnailQuality(encoding.getQuality());
+            metadata.setThumbnailSize(encoding.getSize());
+            metadata.setPlaceholder(encoding.getPlaceholder());
+        });
+        return previousKey[0];
+    }
+
+    /**
+     * Delete a thumbnail written before reprocessing chose another format, and with it another key
+     */
+    private void deleteStaleThumbnail(String key) {
+        try {
+            deleteThumbnail(key);
+            log.debug("Deleted stale thumbnail: {}", key);
+        } catch (Exception e) {
+            log.warn("Could not delete stale thumbnail {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Record the dimensions (as displayed, after orientation) and camera details of an original
+     */
+    protected void recordImageHeader(String originalKey, ImageHeader header) {
+        updateMetadata(originalKey, metadata -> {
+            metadata.setWidth(header.getDisplayWidth());
+            metadata.setHeight(header.getDisplayHeight());
+            metadata.setCameraMake(header.getCameraMake());
+            metadata.setCameraModel(header.getCameraModel());
+            metadata.setCapturedAt(header.getCapturedAt());
+        });
+    }
+
+    /**
+     * Parse the header of an original from its first bytes, returning an empty header if it cannot be read
+     */
+    private ImageHeader readHeader(String key) {
+        try (InputStream in = openHeader(key, headerBytes)) {
+            return ImageHeaderParser.parse(in);
+        } catch (Exception e) {
+            log.warn("Could not read image header of {}: {}", key, e.getMessage());
+            return new ImageHeader();
+        }
+    }
+
+    protected ThumbnailEncoding generateThumbnail(Path input, Path output, int orientation) throws IOException {
         log.info("Generating thumbnail for: {}", input);
 
         // Read the original image
@@ -105,8 +247,6 @@ public abstract class AbstractFileProcessingService implements FileProcessor {
         int originalHeight = originalImage.getHeight();
 
         // Calculate thumbnail dimensions while preserving aspect ratio
-        // Increased size significantly for better clarity (600px max dimension)
-        int maxDimension = 600;
         int thumbnailWidth, thumbnailHeight;
         
         double aspectRatio = (double) originalWidth / originalHeight;
@@ -123,62 +263,17 @@ public abstract class AbstractFileProcessingService implements FileProcessor {
         // This progressive scaling produces better results than single-step scaling
         BufferedImage resultImage = progressiveScaling(originalImage, thumbnailWidth, thumbnailHeight);
 
+        // Turn upright at thumbnail size, where it is cheap; quarter turns and flips need no resampling
+        resultImage = applyOrientation(resultImage, orientation);
+
         // Sharpen the image to enhance details
         resultImage = sharpenImage(resultImage);
 
-        // Determine the output format based on the file extension
-        String extension = StorageUtil.getExtension(output.toString());
-        if (extension.startsWith(".")) {
-            extension = extension.substring(1);
-        }
-        if (extension.isEmpty()) {
-            extension = "jpg"; // Default to jpg if no extension found
-        }
-
-        // Write the thumbnail with optimized settings for different formats
-        if (extension.equalsIgnoreCase("jpg") || extension.equalsIgnoreCase("jpeg")) {
-            // For JPEG, we need to set compression quality
-            javax.imageio.ImageWriter jpgWriter = javax.imageio.ImageIO.getImageWritersByFormatName("jpg").next();
-            javax.imageio.ImageWriteParam jpgWriteParam = jpgWriter.getDefaultWriteParam();
-            jpgWriteParam.setCompressionMode(javax.imageio.ImageWriteParam.MODE_EXPLICIT);
-            // Higher compression quality (0.95 for maximum clarity)
-            jpgWriteParam.setCompressionQuality(0.95f);
-            
-            javax.imageio.IIOImage outputImage = new javax.imageio.IIOImage(resultImage, null, null);
-            javax.imageio.stream.ImageOutputStream outputStream = 
-                javax.imageio.ImageIO.createImageOutputStream(output.toFile());
-            jpgWriter.setOutput(outputStream);
-            jpgWriter.write(null, outputImage, jpgWriteParam);
-            jpgWriter.dispose();
-            outputStream.close();
-        } else {
-            // For PNG, use compression level 0 (no compression) for best quality
-            javax.imageio.ImageWriteParam pngWriteParam = null;
-            if (extension.equalsIgnoreCase("png")) {
-                javax.imageio.ImageWriter pngWriter = ImageIO.getImageWritersByFormatName("png").next();
-                pngWriteParam = pngWriter.getDefaultWriteParam();
-                if (pngWriteParam.canWriteCompressed()) {
-                    pngWriteParam.setCompressionMode(javax.imageio.ImageWriteParam.MODE_EXPLICIT);
-                    pngWriteParam.setCompressionType("Deflate");
-                    pngWriteParam.setCompressionQuality(0.0f); // 0 = best quality for PNG
-                    
-                    javax.imageio.IIOImage outputImage = new javax.imageio.IIOImage(resultImage, null, null);
-                    javax.imageio.stream.ImageOutputStream outputStream = 
-                        javax.imageio.ImageIO.createImageOutputStream(output.toFile());
-                    pngWriter.setOutput(outputStream);
-                    pngWriter.write(null, outputImage, pngWriteParam);
-                    pngWriter.dispose();
-                    outputStream.close();
-                } else {
-                    ImageIO.write(resultImage, extension, output.toFile());
-                }
-            } else {
-                // For other formats, use regular write method
-                ImageIO.write(resultImage, extension, output.toFile());
-            }
-        }
+        // Let the policy pick the format and quality from the content
+        ThumbnailEncoding encoding = encodingPolicy.encode(resultImage, output);
 
-        log.info("Successfully generated thumbnail: {}", output);
+        log.info("Successfully generated thumbnail: {} ({})", output, encoding);
+        return encoding;
     }
     
     /**
@@ -248,6 +343,57 @@ public abstract class AbstractFileProcessingService implements FileProcessor {
         return result;
     }
     
+    /**
+     * Rotate and/or mirror an image according to its EXIF orientation (1 to 8)
+     */
+    private BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2: // mirrored horizontally
+                transform.scale(-1.0, 1.0);
+                transform.translate(-width, 0);
+                break;
+            case 3: // rotated 180
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+                break;
+            case 4: // mirrored vertically
+                transform.scale(1.0, -1.0);
+                transform.translate(0, -height);
+                break;
+            case 5: // mirrored horizontally, then rotated 270 clockwise
+                transform.rotate(-Math.PI / 2);
+                transform.scale(-1.0, 1.0);
+                break;
+            case 6: // rotated 90 clockwise
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+                break;
+            case 7: // mirrored horizontally, then rotated 90 clockwise
+                transform.scale(-1.0, 1.0);
+                transform.translate(-height, 0);
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            case 8: // rotated 270 clockwise
+                transform.translate(0, width);
+                transform.rotate(3 * Math.PI / 2);
+                break;
+            default:
+                return image;
+        }
+
+        boolean transposed = orientation >= 5;
+        BufferedImage result = new BufferedImage(transposed ? height : width, transposed ? width : height,
+                image.getTransparency() != BufferedImage.OPAQUE ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = result.createGraphics();
+        g2d.drawImage(image, transform, null);
+        g2d.dispose();
+        return result;
+    }
+
     /**
      * Apply a sharpening filter to enhance image clarity
      */
@@ -1,9 +1,12 @@
 package com.microsoft.migration.assets.worker.service;
 
+import java.io.InputStream;
 import java.nio.file.Path;
 
 public interface FileProcessor {
     void downloadOriginal(String key, Path destination) throws Exception;
+    InputStream openHeader(String key, int length) throws Exception; // at least the first length bytes, if the object has them
     void uploadThumbnail(Path source, String key, String contentType) throws Exception;
+    void deleteThumbnail(String key) throws Exception;
     String getStorageType();
 }
\ No newline at end of file
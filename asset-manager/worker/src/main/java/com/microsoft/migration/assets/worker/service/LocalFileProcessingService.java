@@ -1,13 +1,18 @@
 package com.microsoft.migration.assets.worker.service;
 
+import com.microsoft.migration.assets.worker.model.ImageMetadata;
+import com.microsoft.migration.assets.worker.repository.ImageMetadataRepository;
+import com.microsoft.migration.assets.worker.util.ShardedStorageLayout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,11 +21,25 @@ import org.slf4j.LoggerFactory;
 public class LocalFileProcessingService extends AbstractFileProcessingService {
     
     private static final Logger logger = LoggerFactory.getLogger(LocalFileProcessingService.class);
+
+    private final ImageMetadataRepository imageMetadataRepository;
     
     @Value("${local.storage.directory:../storage}")
     private String storageDirectory;
+
+    @Value("${local.storage.shard.levels:2}")
+    private int shardLevels;
+
+    @Value("${local.storage.shard.width:2}")
+    private int shardWidth;
     
     private Path rootLocation;
+
+    private ShardedStorageLayout layout;
+
+    public LocalFileProcessingService(ImageMetadataRepository imageMetadataRepository) {
+        this.imageMetadataRepository = imageMetadataRepository;
+    }
     
     @PostConstruct
     public void init() throws Exception {
@@ -31,24 +50,48 @@ public class LocalFileProcessingService extends AbstractFileProcessingService {
             Files.createDirectories(rootLocation);
             logger.info("Created local storage directory");
         }
+
+        layout = new ShardedStorageLayout(rootLocation, shardLevels, shardWidth);
     }
 
     @Override
     public void downloadOriginal(String key, Path destination) throws Exception {
-        Path sourcePath = rootLocation.resolve(key);
+        // The web module may not have moved the original out of the flat layout yet
+        Path sourcePath = layout.locate(key);
         if (!Files.exists(sourcePath)) {
             throw new java.io.FileNotFoundException("File not found: " + sourcePath);
         }
         Files.copy(sourcePath, destination, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    @Override
+    public InputStream openHeader(String key, int length) throws Exception {
+        // Only the bytes the parser asks for are read from disk
+        return Files.newInputStream(layout.locate(key));
+    }
+
     @Override
     public void uploadThumbnail(Path source, String key, String contentType) throws Exception {
-        Path destinationPath = rootLocation.resolve(key);
+        Path destinationPath = layout.resolve(key);
         Files.createDirectories(destinationPath.getParent());
         Files.copy(source, destinationPath, StandardCopyOption.REPLACE_EXISTING);
     }
 
+    @Override
+    public void deleteThumbnail(String key) throws Exception {
+        Files.deleteIfExists(layout.locate(key));
+    }
+
+    @Override
+    protected void updateMetadata(String originalKey, Consumer<ImageMetadata> update) {
+        // The web module records metadata for local uploads too
+        imageMetadataRepository.findFirstByS3Key(originalKey)
+            .ifPresent(metadata -> {
+                update.accept(metadata);
+                imageMetadataRepository.save(metadata);
+            });
+    }
+
     @Override
     public String getStorageType() {
         return "local";
@@ -1,5 +1,6 @@
 package com.microsoft.migration.assets.worker.service;
 
+import com.microsoft.migration.assets.worker.model.ImageMetadata;
 import com.microsoft.migration.assets.worker.repository.ImageMetadataRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -7,6 +8,7 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetUrlRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
@@ -15,6 +17,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
 
 @Service
 @Profile("!dev")
@@ -38,6 +41,18 @@ public class S3FileProcessingService extends AbstractFileProcessingService {
         }
     }
 
+    @Override
+    public InputStream openHeader(String key, int length) throws Exception {
+        // Ranged GET, so reading the header does not transfer the whole image
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range("bytes=0-" + (length - 1))
+                .build();
+
+        return s3Client.getObject(request);
+    }
+
     @Override
     public void uploadThumbnail(Path source, String key, String contentType) throws Exception {
         PutObjectRequest request = PutObjectRequest.builder()
@@ -47,17 +62,23 @@ public class S3FileProcessingService extends AbstractFileProcessingService {
                 .build();
                 
         s3Client.putObject(request, RequestBody.fromFile(source));
+    }
+
+    @Override
+    public void deleteThumbnail(String key) throws Exception {
+        DeleteObjectRequest request = DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+
+        s3Client.deleteObject(request);
+    }
 
-        // Extract the original key from the thumbnail key
-        String originalKey = extractOriginalKey(key);
-        
-        // Find and update metadata
-        imageMetadataRepository.findAll().stream()
-            .filter(metadata -> metadata.getS3Key().equals(originalKey))
-            .findFirst()
+    @Override
+    protected void updateMetadata(String originalKey, Consumer<ImageMetadata> update) {
+        imageMetadataRepository.findFirstByS3Key(originalKey)
             .ifPresent(metadata -> {
-                metadata.setThumbnailKey(key);
-                metadata.setThumbnailUrl(generateUrl(key));
+                update.accept(metadata);
                 imageMetadataRepository.save(metadata);
             });
     }
@@ -75,20 +96,4 @@ public class S3FileProcessingService extends AbstractFileProcessingService {
                 .build();
         return s3Client.utilities().getUrl(request).toString();
     }
-
-    private String extractOriginalKey(String key) {
-        // For a key like "xxxxx_thumbnail.png", get "xxxxx.png"
-        String suffix = "_thumbnail";
-        int extensionIndex = key.lastIndexOf('.');
-        if (extensionIndex > 0) {
-            String nameWithoutExtension = key.substring(0, extensionIndex);
-            String extension = key.substring(extensionIndex);
-            
-            int suffixIndex = nameWithoutExtension.lastIndexOf(suffix);
-            if (suffixIndex > 0) {
-                return nameWithoutExtension.substring(0, suffixIndex) + extension;
-            }
-        }
-        return key;
-    }
 }
\ No newline at end of file
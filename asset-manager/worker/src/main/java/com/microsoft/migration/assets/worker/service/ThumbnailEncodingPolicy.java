@@ -0,0 +1,236 @@
+package com.microsoft.migration.assets.worker.service;
+
+import com.microsoft.migration.assets.worker.model.ThumbnailEncoding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Chooses how to encode a thumbnail from its content.
+ *
+ * Images with few colours (screenshots, diagrams, logos) are written as palette PNGs, which are lossless and
+ * small for such content. Other images with transparency are written as PNG, since JPEG cannot keep it.
+ * Everything else is written as JPEG, at the highest quality that fits the byte budget, found by binary search.
+ * The quality never goes below a fixed minimum; images that do not fit the budget even there are written at the
+ * minimum anyway. The minimum stands in for a perceptual check, which would compare each candidate with the source.
+ *
+ * Each thumbnail also gets a placeholder of a few pixels, inlined in listings so galleries can paint a preview
+ * of every image before any thumbnail has been fetched.
+ */
+@Slf4j
+@Component
+public class ThumbnailEncodingPolicy {
+
+    private static final int SEARCH_STEPS = 5;
+
+    // Longest placeholder stored, matching the metadata column
+    private static final int MAX_PLACEHOLDER_LENGTH = 4096;
+
+    @Value("${thumbnail.encoding.byte-budget:51200}")
+    private int byteBudget = 51200;
+
+    @Value("${thumbnail.jpeg-quality:0.95}")
+    private float maxQuality = 0.95f;
+
+    @Value("${thumbnail.encoding.min-quality:0.6}")
+    private float minQuality = 0.6f;
+
+    @Value("${thumbnail.encoding.max-palette-colors:256}")
+    private int maxPaletteColors = 256;
+
+    // Largest placeholder width or height in pixels
+    @Value("${thumbnail.placeholder.size:16}")
+    private int placeholderSize = 16;
+
+    /**
+     * Encode the image to the output file, returning the parameters that were chosen
+     */
+    public ThumbnailEncoding encode(BufferedImage image, Path output) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+        boolean transparent = false;
+        if (image.getColorModel().hasAlpha()) {
+            for (int pixel : argb) {
+                if ((pixel >>> 24) != 0xFF) {
+                    transparent = true;
+                    break;
+                }
+            }
+        }
+
+        String placeholder = placeholder(image);
+        Map<Integer, Integer> palette = countColors(argb, transparent);
+        byte[] encoded;
+        ThumbnailEncoding encoding;
+        if (palette != null) {
+            encoded = writePng(toIndexed(argb, width, height, palette, transparent));
+            encoding = new ThumbnailEncoding("png", "image/png", null, encoded.length, placeholder);
+        } else if (transparent) {
+            encoded = writePng(image);
+            encoding = new ThumbnailEncoding("png", "image/png", null, encoded.length, placeholder);
+        } else {
+            BufferedImage rgb = toRgb(image);
+            float quality = maxQuality;
+            encoded = writeJpeg(rgb, quality);
+            if (encoded.length > byteBudget) {
+                // Search for the highest quality that fits, between the floor and the maximum
+                float low = minQuality;
+                float high = maxQuality;
+                quality = low;
+                encoded = writeJpeg(rgb, low);
+                if (encoded.length <= byteBudget) {
+                    for (int step = 0; step < SEARCH_STEPS; step++) {
+                        float mid = Math.round((low + high) * 50) / 100f;
+                        if (mid <= low || mid >= high) {
+                            break;
+                        }
+                        byte[] candidate = writeJpeg(rgb, mid);
+                        if (candidate.length <= byteBudget) {
+                            low = mid;
+                            quality = mid;
+                            encoded = candidate;
+                        } else {
+                            high = mid;
+                        }
+                    }
+                }
+            }
+            encoding = new ThumbnailEncoding("jpeg", "image/jpeg", quality, encoded.length, placeholder);
+        }
+
+        Files.write(output, encoded);
+        log.debug("Encoded {}x{} thumbnail as {}", width, height, encoding);
+        return encoding;
+    }
+
+    /**
+     * Shrink the thumbnail to a few pixels and return it as a PNG data URI, small enough to inline in listings.
+     * Browsers upscale it smoothly, which gives the blurred preview. Returns null if it is disabled or too large.
+     */
+    private String placeholder(BufferedImage image) throws IOException {
+        if (placeholderSize <= 0) {
+            return null;
+        }
+        double scale = Math.min(1.0, (double) placeholderSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        // Area averaging blends every source pixel into the result, instead of sampling a few of them
+        Image scaled = image.getScaledInstance(width, height, Image.SCALE_AREA_AVERAGING);
+        BufferedImage small = new BufferedImage(width, height,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = small.createGraphics();
+        g2d.drawImage(scaled, 0, 0, null);
+        g2d.dispose();
+
+        String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(writePng(small));
+        return dataUri.length() <= MAX_PLACEHOLDER_LENGTH ? dataUri : null;
+    }
+
+    /**
+     * Collect the distinct colours of the image, or return null as soon as there are more than fit a palette.
+     * Maps each colour to its palette index.
+     */
+    private Map<Integer, Integer> countColors(int[] argb, boolean transparent) {
+        Map<Integer, Integer> palette = new HashMap<>();
+        for (int pixel : argb) {
+            int color = transparent ? pixel : pixel | 0xFF000000;
+            if (!palette.containsKey(color)) {
+                if (palette.size() >= maxPaletteColors) {
+                    return null;
+                }
+                palette.put(color, palette.size());
+            }
+        }
+        return palette;
+    }
+
+    private static BufferedImage toIndexed(int[] argb, int width, int height, Map<Integer, Integer> palette,
+                                           boolean transparent) {
+        int size = Math.max(palette.size(), 2);
+        byte[] r = new byte[size];
+        byte[] g = new byte[size];
+        byte[] b = new byte[size];
+        byte[] a = new byte[size];
+        for (Map.Entry<Integer, Integer> entry : palette.entrySet()) {
+            int color = entry.getKey();
+            int index = entry.getValue();
+            a[index] = (byte) (color >>> 24);
+            r[index] = (byte) (color >> 16);
+            g[index] = (byte) (color >> 8);
+            b[index] = (byte) color;
+        }
+
+        int bits = size <= 2 ? 1 : size <= 4 ? 2 : size <= 16 ? 4 : 8;
+        IndexColorModel colorModel = new IndexColorModel(bits, size, r, g, b, a);
+        BufferedImage indexed = new BufferedImage(width, height,
+                bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, colorModel);
+        int[] indices = new int[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            indices[i] = palette.get(transparent ? argb[i] : argb[i] | 0xFF000000);
+        }
+        indexed.getRaster().setPixels(0, 0, width, height, indices);
+        return indexed;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rgb.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return rgb;
+    }
+
+    private static byte[] writeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        return write(writer, param, image);
+    }
+
+    private static byte[] writePng(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            // PNG is lossless at any setting; quality 0 selects the strongest deflate compression
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionType("Deflate");
+            param.setCompressionQuality(0.0f);
+        }
+        return write(writer, param, image);
+    }
+
+    private static byte[] write(ImageWriter writer, ImageWriteParam param, BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
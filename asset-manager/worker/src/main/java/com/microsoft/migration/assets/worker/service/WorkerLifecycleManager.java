@@ -0,0 +1,168 @@
+package com.microsoft.migration.assets.worker.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Lets the worker stop without losing or repeating work.
+ *
+ * On shutdown, consumption stops first: the listener registry stops its containers, which cancel their
+ * consumers, so the broker hands undelivered messages to other workers. Meanwhile messages already being
+ * processed get until the drain timeout to finish and be acknowledged. Messages that reach a listener after
+ * draining started are requeued untouched.
+ *
+ * Processing happens in per-message directories under a dedicated work directory. Directories left behind by a
+ * worker that was killed are removed on startup once they are older than any message could take.
+ */
+@Slf4j
+@Component
+public class WorkerLifecycleManager implements SmartLifecycle {
+
+    @Value("${thumbnail.shutdown.drain-timeout-ms:30000}")
+    private long drainTimeoutMillis;
+
+    @Value("${thumbnail.work-dir:${java.io.tmpdir}/image-processing}")
+    private String workDirectory;
+
+    // Age after which a leftover work directory cannot belong to a message still being processed
+    @Value("${thumbnail.work-dir.stale-after-ms:3600000}")
+    private long staleAfterMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean draining;
+    private volatile boolean running;
+    private Path workRoot;
+
+    @PostConstruct
+    public void init() throws IOException {
+        workRoot = Paths.get(workDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(workRoot);
+        sweepStaleWorkDirectories();
+    }
+
+    /**
+     * Register a message as being processed. Returns false once draining has started, in which case the
+     * message should be requeued rather than processed.
+     */
+    public boolean tryBegin() {
+        inFlight.incrementAndGet();
+        if (draining) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void end() {
+        if (inFlight.decrementAndGet() == 0 && draining) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Create an empty directory for processing one message
+     */
+    public Path createWorkDirectory() throws IOException {
+        return Files.createTempDirectory(workRoot, "job-");
+    }
+
+    @Override
+    public void start() {
+        draining = false;
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        draining = true;
+        awaitDrained();
+        running = false;
+    }
+
+    /**
+     * Runs in the default phase, the same as the listener registry, and Spring stops both before waiting on
+     * either: the containers cancel their consumers while this waits, off the closing thread, for the messages
+     * they were processing. The containers give up on their consumers after the same timeout.
+     */
+    @Override
+    public void stop(Runnable callback) {
+        draining = true;
+        Thread drain = new Thread(() -> {
+            awaitDrained();
+            running = false;
+            callback.run();
+        }, "worker-drain");
+        drain.start();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void awaitDrained() {
+        log.info("Stopping consumption, draining {} in-flight messages for up to {} ms", inFlight.get(), drainTimeoutMillis);
+        long started = System.currentTimeMillis();
+        long deadline = started + drainTimeoutMillis;
+        synchronized (inFlight) {
+            long wait;
+            while (inFlight.get() > 0 && (wait = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    inFlight.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        int remaining = inFlight.get();
+        if (remaining > 0) {
+            log.warn("Drain timed out after {} ms, {} messages will be redelivered", System.currentTimeMillis() - started, remaining);
+        } else {
+            log.info("Drained in-flight messages in {} ms", System.currentTimeMillis() - started);
+        }
+    }
+
+    private void sweepStaleWorkDirectories() {
+        long cutoff = System.currentTimeMillis() - staleAfterMillis;
+        int removed = 0;
+        try (Stream<Path> directories = Files.list(workRoot)) {
+            for (Path directory : (Iterable<Path>) directories::iterator) {
+                try {
+                    if (Files.getLastModifiedTime(directory).toMillis() < cutoff) {
+                        deleteRecursively(directory);
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not remove stale work directory {}: {}", directory, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not sweep work directory {}: {}", workRoot, e.getMessage());
+        }
+        if (removed > 0) {
+            log.info("Removed {} stale work directories from {}", removed, workRoot);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path child : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.microsoft.migration.assets.worker.util;
+
+import com.microsoft.migration.assets.worker.model.ImageHeader;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads dimensions, and for JPEG the EXIF orientation, camera and capture date, from the start of an image file.
+ *
+ * The stream is read forward only and no further than needed (for JPEG, up to the start-of-frame marker),
+ * so the first few KB of an object are usually enough. Whatever was found before the data ran out or turned
+ * out malformed is returned.
+ */
+public class ImageHeaderParser {
+
+    private static final int TAG_MAKE = 0x010F;
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+
+    private static final DateTimeFormatter EXIF_DATE_TIME = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    public static ImageHeader parse(InputStream in) throws IOException {
+        ImageHeader header = new ImageHeader();
+        DataInputStream data = new DataInputStream(in);
+        try {
+            int first = data.readUnsignedByte();
+            int second = data.readUnsignedByte();
+            if (first == 0xFF && second == 0xD8) {
+                parseJpeg(data, header);
+            } else if (first == 0x89 && second == 'P') {
+                // Signature (8 bytes), IHDR length and type (8 bytes), then width and height
+                skip(data, 14);
+                header.setWidth(data.readInt());
+                header.setHeight(data.readInt());
+            } else if (first == 'G' && second == 'I') {
+                skip(data, 4);
+                header.setWidth(Short.toUnsignedInt(Short.reverseBytes(data.readShort())));
+                header.setHeight(Short.toUnsignedInt(Short.reverseBytes(data.readShort())));
+            } else if (first == 'B' && second == 'M') {
+                skip(data, 16);
+                header.setWidth(Integer.reverseBytes(data.readInt()));
+                header.setHeight(Math.abs(Integer.reverseBytes(data.readInt())));
+            }
+        } catch (EOFException e) {
+            // Ran out of data before finding everything; keep what was found
+        }
+        return header;
+    }
+
+    private static void parseJpeg(DataInputStream data, ImageHeader header) throws IOException {
+        while (true) {
+            // Markers start with 0xFF, possibly repeated as fill bytes
+            int marker;
+            do {
+                marker = data.readUnsignedByte();
+            } while (marker != 0xFF);
+            do {
+                marker = data.readUnsignedByte();
+            } while (marker == 0xFF);
+
+            if (marker == 0xD9 || marker == 0xDA) {
+                // End of image or start of scan: no frame header follows
+                return;
+            }
+            if ((marker >= 0xD0 && marker <= 0xD7) || marker == 0x01) {
+                continue; // markers without a length
+            }
+
+            int length = data.readUnsignedShort() - 2;
+            if (length < 0) {
+                return;
+            }
+            if (isStartOfFrame(marker)) {
+                data.readUnsignedByte(); // sample precision
+                header.setHeight(data.readUnsignedShort());
+                header.setWidth(data.readUnsignedShort());
+                return;
+            }
+            if (marker == 0xE1 && length >= 14) {
+                byte[] segment = new byte[length];
+                data.readFully(segment);
+                if (startsWith(segment, "Exif\0\0")) {
+                    parseTiff(segment, 6, header);
+                }
+            } else {
+                skip(data, length);
+            }
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0 to SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static void parseTiff(byte[] buffer, int start, ImageHeader header) {
+        Tiff tiff = new Tiff(buffer, start);
+        if (!tiff.valid()) {
+            return;
+        }
+        long exifIfd = -1;
+        int ifd = (int) tiff.u32(start + 4);
+        int count = tiff.u16(start + ifd);
+        for (int i = 0; i < count; i++) {
+            int entry = start + ifd + 2 + i * 12;
+            if (entry + 12 > buffer.length) {
+                break;
+            }
+            int tag = tiff.u16(entry);
+            if (tag == TAG_ORIENTATION) {
+                int orientation = tiff.u16(entry + 8);
+                if (orientation >= 1 && orientation <= 8) {
+                    header.setOrientation(orientation);
+                }
+            } else if (tag == TAG_MAKE) {
+                header.setCameraMake(tiff.ascii(entry));
+            } else if (tag == TAG_MODEL) {
+                header.setCameraModel(tiff.ascii(entry));
+            } else if (tag == TAG_EXIF_IFD) {
+                exifIfd = tiff.u32(entry + 8);
+            }
+        }
+
+        if (exifIfd > 0 && start + exifIfd + 2 <= buffer.length) {
+            int exifCount = tiff.u16(start + (int) exifIfd);
+            for (int i = 0; i < exifCount; i++) {
+                int entry = start + (int) exifIfd + 2 + i * 12;
+                if (entry + 12 > buffer.length) {
+                    break;
+                }
+                if (tiff.u16(entry) == TAG_DATE_TIME_ORIGINAL) {
+                    String value = tiff.ascii(entry);
+                    if (value != null) {
+                        try {
+                            header.setCapturedAt(LocalDateTime.parse(value, EXIF_DATE_TIME));
+                        } catch (DateTimeParseException e) {
+                            // Cameras without a clock write blanks or zeros
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean startsWith(byte[] buffer, String prefix) {
+        byte[] expected = prefix.getBytes(StandardCharsets.ISO_8859_1);
+        if (buffer.length < expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skip(DataInputStream data, int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            int skipped = data.skipBytes(remaining);
+            if (skipped <= 0) {
+                // skipBytes returns 0 at the end of the stream as well as when it cannot skip
+                data.readUnsignedByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Reads values from a TIFF structure (the body of an EXIF segment) in either byte order
+     */
+    private static final class Tiff {
+        private final byte[] buffer;
+        private final int start;
+        private final boolean bigEndian;
+
+        private Tiff(byte[] buffer, int start) {
+            this.buffer = buffer;
+            this.start = start;
+            this.bigEndian = buffer.length > start + 1 && buffer[start] == 'M' && buffer[start + 1] == 'M';
+        }
+
+        boolean valid() {
+            boolean littleEndian = buffer.length > start + 1 && buffer[start] == 'I' && buffer[start + 1] == 'I';
+            return (bigEndian || littleEndian) && buffer.length >= start + 8 && u16(start + 2) == 42
+                    && u32(start + 4) < buffer.length - start;
+        }
+
+        int u16(int offset) {
+            if (offset < 0 || offset + 2 > buffer.length) {
+                return 0;
+            }
+            int a = buffer[offset] & 0xFF;
+            int b = buffer[offset + 1] & 0xFF;
+            return bigEndian ? (a << 8) | b : (b << 8) | a;
+        }
+
+        long u32(int offset) {
+            if (offset < 0 || offset + 4 > buffer.length) {
+                return 0;
+            }
+            long high = u16(bigEndian ? offset : offset + 2);
+            long low = u16(bigEndian ? offset + 2 : offset);
+            return (high << 16) | low;
+        }
+
+        /**
+         * Read the ASCII value of an IFD entry, stored inline if it fits in four bytes
+         */
+        String ascii(int entry) {
+            long count = u32(entry + 4);
+            int offset = count <= 4 ? entry + 8 : start + (int) u32(entry + 8);
+            if (count <= 0 || count > 1024 || offset < 0 || offset + count > buffer.length) {
+                return null;
+            }
+            String value = new String(buffer, offset, (int) count, StandardCharsets.ISO_8859_1);
+            int nul = value.indexOf('\0');
+            value = (nul >= 0 ? value.substring(0, nul) : value).trim();
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.microsoft.migration.assets.worker.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Maps storage keys to paths in a hash-sharded directory layout, for example
+ * {@code root/3f/a2/photo.jpg} with two levels of two hex characters.
+ *
+ * The shard is derived from the original key, so a thumbnail always lives next to its original.
+ * Files from the older flat layout ({@code root/photo.jpg}) are still found until they are migrated.
+ *
+ * The web module uses the same mapping; keep the two copies in sync. ShardedStorageLayoutTest in each
+ * module pins the same paths for a fixed set of keys.
+ */
+public final class ShardedStorageLayout {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path root;
+    private final int levels;
+    private final int width;
+
+    public ShardedStorageLayout(Path root, int levels, int width) {
+        if (levels < 0 || width < 1 || levels * width > 32) {
+            throw new IllegalArgumentException("Invalid shard layout: " + levels + " levels of width " + width);
+        }
+        this.root = root;
+        this.levels = levels;
+        this.width = width;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Number of directory levels between the root and a file
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Get the sharded path for a key
+     */
+    public Path resolve(String key) {
+        String hash = hash(shardKeyOf(key));
+        Path directory = root;
+        for (int level = 0; level < levels; level++) {
+            directory = directory.resolve(hash.substring(level * width, (level + 1) * width));
+        }
+        return directory.resolve(key);
+    }
+
+    /**
+     * Get the path a key had in the flat layout
+     */
+    public Path resolveFlat(String key) {
+        return root.resolve(key);
+    }
+
+    /**
+     * Get the existing path for a key, checking the sharded location first and then the flat one.
+     * Returns the sharded path if the file exists in neither.
+     */
+    public Path locate(String key) {
+        Path sharded = resolve(key);
+        if (levels == 0 || Files.exists(sharded)) {
+            return sharded;
+        }
+        Path flat = resolveFlat(key);
+        return Files.exists(flat) ? flat : sharded;
+    }
+
+    /**
+     * Get the key that determines the shard: the original key for thumbnails, the key itself otherwise
+     */
+    static String shardKeyOf(String key) {
+        String originalKey = StorageUtil.getOriginalKey(key);
+        return originalKey != null ? originalKey : key;
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
@@ -1,15 +1,46 @@
 package com.microsoft.migration.assets.worker.util;
 
+/**
+ * Thumbnail key naming, shared with the web module, which pairs and deletes thumbnails; keep the two in sync.
+ */
 public class StorageUtil {
+
+    private static final String THUMBNAIL_SUFFIX = "_thumbnail";
+
     /**
      * Get the thumbnail key for a given key
      */
     public static String getThumbnailKey(String key) {
         int dotIndex = key.lastIndexOf('.');
         if (dotIndex > 0) {
-            return key.substring(0, dotIndex) + "_thumbnail" + key.substring(dotIndex);
+            return key.substring(0, dotIndex) + THUMBNAIL_SUFFIX + key.substring(dotIndex);
+        }
+        return key + THUMBNAIL_SUFFIX;
+    }
+
+    /**
+     * Get the key of a thumbnail encoded in the given format ("jpeg" or "png"). When the original's extension
+     * names another format, the thumbnail's own extension is appended (photo_thumbnail.gif.png), so the key
+     * still leads back to the original. Keys without an extension get none.
+     */
+    public static String getThumbnailKey(String key, String format) {
+        String extension = getExtension(key);
+        if (extension.isEmpty() || formatOf(extension).equals(format)) {
+            return getThumbnailKey(key);
+        }
+        return getThumbnailKey(key) + ("jpeg".equals(format) ? ".jpg" : "." + format);
+    }
+
+    /**
+     * Get the key of the original a thumbnail key belongs to, or null if the key is not a thumbnail's
+     */
+    public static String getOriginalKey(String key) {
+        String original = stripThumbnailSuffix(key);
+        if (original == null && (key.endsWith(".jpg") || key.endsWith(".png"))) {
+            // A thumbnail encoded in another format than its original's
+            original = stripThumbnailSuffix(key.substring(0, key.length() - 4));
         }
-        return key + "_thumbnail";
+        return original;
     }
 
     /**
@@ -19,4 +50,18 @@ public class StorageUtil {
         int dotIndex = filename.lastIndexOf('.');
         return dotIndex > 0 ? filename.substring(dotIndex) : "";
     }
-}
\ No newline at end of file
+
+    private static String stripThumbnailSuffix(String key) {
+        int dotIndex = key.lastIndexOf('.');
+        String name = dotIndex > 0 ? key.substring(0, dotIndex) : key;
+        if (name.endsWith(THUMBNAIL_SUFFIX) && name.length() > THUMBNAIL_SUFFIX.length()) {
+            return name.substring(0, name.length() - THUMBNAIL_SUFFIX.length()) + getExtension(key);
+        }
+        return null;
+    }
+
+    private static String formatOf(String extension) {
+        String lower = extension.toLowerCase();
+        return ".jpg".equals(lower) || ".jpeg".equals(lower) ? "jpeg" : lower.substring(1);
+    }
+}
@@ -1,5 +1,7 @@
 package com.microsoft.migration.assets.worker.service;
 
+import com.microsoft.migration.assets.worker.model.ImageMetadata;
+import com.microsoft.migration.assets.worker.model.ThumbnailEncoding;
 import com.microsoft.migration.assets.worker.repository.ImageMetadataRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +12,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Utilities;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
@@ -17,7 +21,7 @@ import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
@@ -76,7 +80,6 @@ public class S3FileProcessingServiceTest {
     void uploadThumbnailPutsFileToS3() throws Exception {
         // Arrange
         Path tempFile = Files.createTempFile("thumbnail-", ".tmp");
-        when(imageMetadataRepository.findAll()).thenReturn(Collections.emptyList());
 
         // Act
         s3FileProcessingService.uploadThumbnail(tempFile, thumbnailKey, "image/jpeg");
@@ -89,14 +92,23 @@ public class S3FileProcessingServiceTest {
     }
 
     @Test
-    void testExtractOriginalKey() throws Exception {
-        // Use reflection to test private method
-        String result = (String) ReflectionTestUtils.invokeMethod(
-                s3FileProcessingService,
-                "extractOriginalKey",
-                "image_thumbnail.jpg");
+    void recordThumbnailUpdatesMetadataOfOriginal() {
+        // Arrange
+        ImageMetadata metadata = new ImageMetadata();
+        metadata.setS3Key(testKey);
+        when(imageMetadataRepository.findFirstByS3Key(testKey)).thenReturn(Optional.of(metadata));
+        when(s3Client.utilities()).thenReturn(S3Utilities.builder().region(Region.US_EAST_1).build());
+
+        // Act
+        s3FileProcessingService.recordThumbnail(testKey, thumbnailKey,
+                new ThumbnailEncoding("jpeg", "image/jpeg", 0.8f, 1234, "data:image/png;base64,AAAA"));
 
         // Assert
-        assertEquals("image.jpg", result);
+        verify(imageMetadataRepository).save(metadata);
+        assertEquals(thumbnailKey, metadata.getThumbnailKey());
+        assertEquals("jpeg", metadata.getThumbnailFormat());
+        assertEquals(0.8f, metadata.getThumbnailQuality());
+        assertEquals(1234L, metadata.getThumbnailSize());
+        assertEquals("data:image/png;base64,AAAA", metadata.getPlaceholder());
     }
 }
@@ -0,0 +1,202 @@
+package com.microsoft.migration.assets.worker.service;
+
+import com.microsoft.migration.assets.worker.model.ThumbnailEncoding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThumbnailEncodingPolicyTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ThumbnailEncodingPolicy policy = new ThumbnailEncodingPolicy();
+
+    @Test
+    void fewColorsAreWrittenAsPalettePng() throws Exception {
+        // Arrange
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                image.setRGB(x, y, x < 50 ? 0xFF0000 : 0x0000FF);
+            }
+        }
+        Path output = tempDir.resolve("thumbnail");
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, output);
+
+        // Assert
+        assertEquals("png", encoding.getFormat());
+        assertEquals("image/png", encoding.getContentType());
+        assertNull(encoding.getQuality());
+        assertEquals(Files.size(output), encoding.getSize());
+        assertTrue(ImageIO.read(output.toFile()).getColorModel() instanceof IndexColorModel);
+    }
+
+    @Test
+    void transparencyIsKeptAsPng() throws Exception {
+        // Arrange
+        BufferedImage image = noise(100, 100, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x00000000);
+        Path output = tempDir.resolve("thumbnail");
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, output);
+
+        // Assert
+        assertEquals("png", encoding.getFormat());
+        assertNull(encoding.getQuality());
+        BufferedImage written = ImageIO.read(output.toFile());
+        assertTrue(written.getColorModel().hasAlpha());
+        assertEquals(0, written.getRGB(0, 0) >>> 24);
+    }
+
+    @Test
+    void opaqueAlphaChannelIsWrittenAsJpeg() throws Exception {
+        // Arrange
+        BufferedImage image = noise(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Path output = tempDir.resolve("thumbnail");
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, output);
+
+        // Assert
+        assertEquals("jpeg", encoding.getFormat());
+        assertEquals("image/jpeg", encoding.getContentType());
+    }
+
+    @Test
+    void photoWithinBudgetKeepsMaximumQuality() throws Exception {
+        // Arrange
+        BufferedImage image = noise(64, 64, BufferedImage.TYPE_INT_RGB);
+        Path output = tempDir.resolve("thumbnail");
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, output);
+
+        // Assert
+        assertEquals("jpeg", encoding.getFormat());
+        assertEquals(0.95f, encoding.getQuality());
+    }
+
+    @Test
+    void searchFindsQualityBetweenMinimumAndMaximumThatFits() throws Exception {
+        // Arrange
+        BufferedImage image = noise(300, 300, BufferedImage.TYPE_INT_RGB);
+        int budget = (jpegSize(image, 0.6f) + jpegSize(image, 0.95f)) / 2;
+        ReflectionTestUtils.setField(policy, "byteBudget", budget);
+        Path output = tempDir.resolve("thumbnail");
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, output);
+
+        // Assert
+        assertEquals("jpeg", encoding.getFormat());
+        assertTrue(encoding.getQuality() > 0.6f && encoding.getQuality() < 0.95f, "quality " + encoding.getQuality());
+        assertTrue(encoding.getSize() <= budget, "size " + encoding.getSize() + " over budget " + budget);
+    }
+
+    @Test
+    void budgetTooSmallForMinimumQualityWritesAtMinimum() throws Exception {
+        // Arrange
+        BufferedImage image = noise(300, 300, BufferedImage.TYPE_INT_RGB);
+        ReflectionTestUtils.setField(policy, "byteBudget", 1);
+        Path output = tempDir.resolve("thumbnail");
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, output);
+
+        // Assert
+        assertEquals(0.6f, encoding.getQuality());
+        assertEquals(jpegSize(image, 0.6f), encoding.getSize());
+    }
+
+    @Test
+    void placeholderIsSmallPngDataUri() throws Exception {
+        // Arrange
+        BufferedImage image = noise(300, 200, BufferedImage.TYPE_INT_RGB);
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, tempDir.resolve("thumbnail"));
+
+        // Assert
+        assertNotNull(encoding.getPlaceholder());
+        assertTrue(encoding.getPlaceholder().startsWith("data:image/png;base64,"));
+        assertTrue(encoding.getPlaceholder().length() <= 4096);
+    }
+
+    @Test
+    void placeholderOverSizeCapIsDropped() throws Exception {
+        // Arrange
+        BufferedImage image = noise(300, 300, BufferedImage.TYPE_INT_RGB);
+        // Noise barely compresses, so a 300 pixel placeholder is far beyond the cap
+        ReflectionTestUtils.setField(policy, "placeholderSize", 300);
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, tempDir.resolve("thumbnail"));
+
+        // Assert
+        assertNull(encoding.getPlaceholder());
+    }
+
+    @Test
+    void placeholderCanBeDisabled() throws Exception {
+        // Arrange
+        BufferedImage image = noise(100, 100, BufferedImage.TYPE_INT_RGB);
+        ReflectionTestUtils.setField(policy, "placeholderSize", 0);
+
+        // Act
+        ThumbnailEncoding encoding = policy.encode(image, tempDir.resolve("thumbnail"));
+
+        // Assert
+        assertNull(encoding.getPlaceholder());
+    }
+
+    private static BufferedImage noise(int width, int height, int type) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static int jpegSize(BufferedImage image, float quality) throws IOException {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgb.setRGB(0, 0, image.getWidth(), image.getHeight(),
+                image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()), 0, image.getWidth());
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.size();
+    }
+}
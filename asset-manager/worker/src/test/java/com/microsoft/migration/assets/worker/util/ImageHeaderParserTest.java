@@ -0,0 +1,99 @@
+package com.microsoft.migration.assets.worker.util;
+
+import com.microsoft.migration.assets.worker.model.ImageHeader;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ImageHeaderParserTest {
+
+    @Test
+    void parseReadsDimensionsOfCommonFormats() throws Exception {
+        for (String format : new String[] {"jpg", "png", "gif", "bmp"}) {
+            ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(encode(format)));
+
+            assertEquals(320, header.getWidth(), format);
+            assertEquals(200, header.getHeight(), format);
+            assertEquals(1, header.getOrientation(), format);
+        }
+    }
+
+    @Test
+    void parseReadsExifInBothByteOrders() throws Exception {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(jpegWithExif(order)));
+
+            assertEquals(6, header.getOrientation());
+            assertEquals("Canon", header.getCameraMake());
+            assertEquals("X1", header.getCameraModel());
+            assertEquals(LocalDateTime.of(2024, 5, 6, 7, 8, 9), header.getCapturedAt());
+            assertEquals(200, header.getDisplayWidth());
+            assertEquals(320, header.getDisplayHeight());
+        }
+    }
+
+    @Test
+    void parseKeepsWhatWasFoundWhenDataRunsOut() throws Exception {
+        byte[] jpeg = jpegWithExif(ByteOrder.BIG_ENDIAN);
+
+        ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(jpeg, 0, 40));
+
+        assertNull(header.getWidth());
+        assertEquals(1, header.getOrientation());
+    }
+
+    private static byte[] encode(String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(320, 200, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * A 320x200 JPEG with an EXIF segment holding make, model, orientation 6 and the capture date
+     */
+    private static byte[] jpegWithExif(ByteOrder order) throws Exception {
+        int entries = 4;
+        int makeOffset = 8 + 2 + entries * 12 + 4;
+        int exifOffset = makeOffset + 6;
+        int dateOffset = exifOffset + 2 + 12 + 4;
+
+        ByteBuffer tiff = ByteBuffer.allocate(256).order(order);
+        byte mark = (byte) (order == ByteOrder.BIG_ENDIAN ? 'M' : 'I');
+        tiff.put(mark).put(mark).putShort((short) 42).putInt(8);
+        tiff.putShort((short) entries);
+        tiff.putShort((short) 0x010F).putShort((short) 2).putInt(6).putInt(makeOffset);
+        tiff.putShort((short) 0x0110).putShort((short) 2).putInt(3).put((byte) 'X').put((byte) '1').putShort((short) 0);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) 6).putShort((short) 0);
+        tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(exifOffset);
+        tiff.putInt(0);
+        tiff.put("Canon\0".getBytes(StandardCharsets.US_ASCII));
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x9003).putShort((short) 2).putInt(20).putInt(dateOffset);
+        tiff.putInt(0);
+        tiff.put("2024:05:06 07:08:09\0".getBytes(StandardCharsets.US_ASCII));
+
+        byte[] jpeg = encode("jpg");
+        int length = 2 + 6 + tiff.position();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write("Exif\0\0".getBytes(StandardCharsets.US_ASCII));
+        out.write(tiff.array(), 0, tiff.position());
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,74 @@
+package com.microsoft.migration.assets.worker.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedStorageLayoutTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void resolvePlacesKeyUnderHexShardDirectories() {
+        ShardedStorageLayout layout = new ShardedStorageLayout(root, 2, 2);
+
+        Path path = layout.resolve("photo.jpg");
+
+        Path relative = root.relativize(path);
+        assertEquals(3, relative.getNameCount());
+        assertTrue(relative.getName(0).toString().matches("[0-9a-f]{2}"));
+        assertTrue(relative.getName(1).toString().matches("[0-9a-f]{2}"));
+        assertEquals("photo.jpg", relative.getFileName().toString());
+    }
+
+    @Test
+    void thumbnailSharesShardWithOriginal() {
+        ShardedStorageLayout layout = new ShardedStorageLayout(root, 2, 2);
+
+        Path original = layout.resolve("photo.jpg");
+        Path thumbnail = layout.resolve(StorageUtil.getThumbnailKey("photo.jpg"));
+
+        assertEquals(original.getParent(), thumbnail.getParent());
+    }
+
+    // The web module has its own copy of this mapping and pins the same paths; a change to either copy
+    // must change both, or files written by one module can't be found by the other
+    @Test
+    void mappingIsPinnedForBothModules() {
+        ShardedStorageLayout layout = new ShardedStorageLayout(root, 2, 2);
+
+        assertEquals(root.resolve("72/ac/photo.jpg"), layout.resolve("photo.jpg"));
+        assertEquals(root.resolve("72/ac/photo_thumbnail.jpg"), layout.resolve("photo_thumbnail.jpg"));
+        assertEquals(root.resolve("f1/21/logo_thumbnail.jpg.png"), layout.resolve("logo_thumbnail.jpg.png"));
+        assertEquals(root.resolve("b1/40/my photo (1).jpg"), layout.resolve("my photo (1).jpg"));
+        assertEquals(root.resolve("43/58/notes"), layout.resolve("notes"));
+    }
+
+    @Test
+    void locateFallsBackToFlatLayout() throws Exception {
+        ShardedStorageLayout layout = new ShardedStorageLayout(root, 2, 2);
+        Path flat = Files.createFile(root.resolve("legacy.png"));
+
+        assertEquals(flat, layout.locate("legacy.png"));
+        assertEquals(layout.resolve("missing.png"), layout.locate("missing.png"));
+    }
+
+    @Test
+    void zeroLevelsKeepsFlatLayout() {
+        ShardedStorageLayout layout = new ShardedStorageLayout(root, 0, 2);
+
+        assertEquals(root.resolve("photo.jpg"), layout.resolve("photo.jpg"));
+    }
+
+    @Test
+    void rejectsLayoutLongerThanHash() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedStorageLayout(root, 17, 2));
+    }
+}
@@ -0,0 +1,44 @@
+package com.microsoft.migration.assets.worker.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Pins the keys thumbnails are written under; the web module's StorageUtilTest expects the same keys
+public class StorageUtilTest {
+
+    @Test
+    void thumbnailInOriginalsFormatKeepsItsExtension() {
+        assertEquals("photo_thumbnail.jpg", StorageUtil.getThumbnailKey("photo.jpg", "jpeg"));
+        assertEquals("photo_thumbnail.JPEG", StorageUtil.getThumbnailKey("photo.JPEG", "jpeg"));
+        assertEquals("logo_thumbnail.png", StorageUtil.getThumbnailKey("logo.png", "png"));
+    }
+
+    @Test
+    void thumbnailInAnotherFormatGetsItsOwnExtension() {
+        assertEquals("logo_thumbnail.jpg.png", StorageUtil.getThumbnailKey("logo.jpg", "png"));
+        assertEquals("scan_thumbnail.png.jpg", StorageUtil.getThumbnailKey("scan.png", "jpeg"));
+        assertEquals("anim_thumbnail.gif.png", StorageUtil.getThumbnailKey("anim.gif", "png"));
+    }
+
+    @Test
+    void keyWithoutExtensionGetsNone() {
+        assertEquals("photo_thumbnail", StorageUtil.getThumbnailKey("photo", "png"));
+    }
+
+    @Test
+    void originalKeyIsFoundFromEitherThumbnailKey() {
+        assertEquals("photo.jpg", StorageUtil.getOriginalKey("photo_thumbnail.jpg"));
+        assertEquals("logo.jpg", StorageUtil.getOriginalKey("logo_thumbnail.jpg.png"));
+        assertEquals("anim.gif", StorageUtil.getOriginalKey("anim_thumbnail.gif.png"));
+        assertEquals("photo", StorageUtil.getOriginalKey("photo_thumbnail"));
+    }
+
+    @Test
+    void originalKeysAreNotThumbnails() {
+        assertNull(StorageUtil.getOriginalKey("photo.jpg"));
+        assertNull(StorageUtil.getOriginalKey("photo.jpg.png"));
+        assertNull(StorageUtil.getOriginalKey("_thumbnail.jpg"));
+    }
+}
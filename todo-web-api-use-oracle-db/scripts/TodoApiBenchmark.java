@@ -0,0 +1,111 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for the todo API. Keeps {@code concurrency} requests to one URL in flight,
+ * issuing the next as soon as one completes. After a warm-up it measures for a fixed time, then prints
+ * throughput, responses by status and latency percentiles.
+ *
+ * <p>Runs from source with Java 17 or later:
+ * {@code java scripts/TodoApiBenchmark.java [url] [concurrency] [seconds] [warmupSeconds]}
+ */
+public class TodoApiBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080/api/todos/page?size=50";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int warmupSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+
+        long measureFrom = System.nanoTime() + Duration.ofSeconds(warmupSeconds).toNanos();
+        long measureUntil = measureFrom + Duration.ofSeconds(seconds).toNanos();
+        Run run = new Run(client, request, measureFrom, measureUntil, concurrency);
+
+        System.out.printf("%s, %d concurrent, %ds after %ds warm-up%n", url, concurrency, seconds, warmupSeconds);
+        for (int i = 0; i < concurrency; i++) {
+            run.next();
+        }
+        run.done.await();
+        run.report(seconds);
+    }
+
+    private static class Run {
+
+        final HttpClient client;
+        final HttpRequest request;
+        final long measureFrom;
+        final long measureUntil;
+        final CountDownLatch done;
+
+        // Only requests that start and end inside the measured window count
+        final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        Run(HttpClient client, HttpRequest request, long measureFrom, long measureUntil, int concurrency) {
+            this.client = client;
+            this.request = request;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.done = new CountDownLatch(concurrency);
+        }
+
+        void next() {
+            long start = System.nanoTime();
+            if (start >= measureUntil) {
+                done.countDown();
+                return;
+            }
+            // Async, so a request that fails at once doesn't recurse into the next on the same stack
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenCompleteAsync((response, error) -> {
+                long end = System.nanoTime();
+                if (start >= measureFrom && end <= measureUntil) {
+                    latencies.add(end - start);
+                    // Failures arrive wrapped in a CompletionException
+                    String outcome = error != null ? error.getCause().getClass().getSimpleName()
+                                                   : String.valueOf(response.statusCode());
+                    outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+                }
+                next();
+            });
+        }
+
+        void report(int seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            long ok = outcomes.getOrDefault("200", new LongAdder()).sum();
+            System.out.printf("requests: %d, throughput: %.1f/s, 200 responses: %.1f/s%n",
+                    sorted.length, sorted.length / (double) seconds, ok / (double) seconds);
+            Map<String, Long> byOutcome = new TreeMap<>();
+            outcomes.forEach((outcome, count) -> byOutcome.put(outcome, count.sum()));
+            System.out.println("outcomes: " + byOutcome);
+            if (sorted.length > 0) {
+                System.out.printf("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                        millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 1.0));
+            }
+        }
+
+        static double millis(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+#!/bin/bash
+
+# Runs the same load against the application on platform threads (the default) and on virtual threads
+# (the virtual-threads profile), one after the other, and prints the results of each.
+# Needs Java 21 or later, and the Oracle container from the README.
+#
+# Usage: scripts/benchmark.sh [concurrency] [seconds] [path]
+
+# Get the directory where the script is located
+SCRIPT_DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+PROJECT_ROOT="$SCRIPT_DIR/.."
+
+CONCURRENCY=${1:-1000}
+DURATION=${2:-30}
+
+# The virtual-threads profile refuses to start on an older JRE
+JAVA_VERSION=$(java -XshowSettings:properties -version 2>&1 | awk -F' = ' '/java.specification.version/ {print $2}')
+if [ "${JAVA_VERSION%%.*}" -lt 21 ]; then
+    echo "Java 21 or later is needed, found $JAVA_VERSION" >&2
+    exit 1
+fi
+# Paging always reads from the database, unlike the endpoints served from memory
+URL_PATH=${3:-/api/todos/page?size=50}
+URL="http://localhost:8080$URL_PATH"
+
+mkdir -p "$PROJECT_ROOT/logs"
+
+echo "Building application..."
+(cd "$PROJECT_ROOT" && mvn -q -DskipTests package) || exit 1
+JAR=$(ls "$PROJECT_ROOT"/target/*.jar | head -1)
+
+run() {
+    local mode=$1
+    local profiles=$2
+
+    echo
+    echo "=== $mode ==="
+    java -jar "$JAR" --spring.profiles.active="$profiles" > "$PROJECT_ROOT/logs/benchmark-$mode.log" 2>&1 &
+    local pid=$!
+
+    echo "Waiting for the application to start..."
+    for i in $(seq 1 60); do
+        curl -sf -o /dev/null "http://localhost:8080/api/todos/stats" && break
+        sleep 2
+    done
+    if ! kill -0 $pid 2>/dev/null; then
+        echo "The application failed to start, see logs/benchmark-$mode.log" >&2
+        exit 1
+    fi
+
+    java "$SCRIPT_DIR/TodoApiBenchmark.java" "$URL" "$CONCURRENCY" "$DURATION"
+
+    kill $pid
+    wait $pid 2>/dev/null
+}
+
+run platform-threads ""
+run virtual-threads virtual-threads
@@ -0,0 +1,223 @@
+package com.microsoft.migration.todo.cache;
+
+import com.microsoft.migration.todo.event.TodoDeletedEvent;
+import com.microsoft.migration.todo.event.TodoPriorityBulkUpdatedEvent;
+import com.microsoft.migration.todo.event.TodoSavedEvent;
+import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.repository.TodoRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Pending todo items with a due date, kept in memory and maintained from write events, so polling the
+ * overdue list doesn't query the database.
+ *
+ * <p>Items wait in a queue ordered by due date. Each read first moves the items that have fallen due since
+ * the last read from the head of the queue to the overdue set, which is kept in the order of the overdue
+ * query. Pages are cut from an array copy of that set, made again only after the set changes. Holds a copy of
+ * every pending item with a due date.
+ *
+ * <p>The items are streamed from the database in the background, without holding the lock, and swapped in
+ * once read. Writes that commit meanwhile are replayed onto them first. Until the first load finishes, and
+ * after a failed priority update, reads return empty and the caller goes to the database. Once the items are
+ * older than {@code todo.overdue.queue.max-age}, reads keep being served from them while they are reloaded.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.overdue.queue.enabled", havingValue = "true")
+@Slf4j
+public class OverdueQueue {
+
+    // Same order as TodoRepository.findOverdue
+    private static final Comparator<TodoItem> OVERDUE_ORDER = Comparator.comparingInt(TodoItem::getPriority).reversed()
+            .thenComparing(TodoItem::getDueDate)
+            .thenComparing(TodoItem::getId);
+
+    private static final Comparator<TodoItem> DUE_ORDER = Comparator.comparing(TodoItem::getDueDate)
+            .thenComparing(TodoItem::getId);
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    // Bounds staleness from writes that don't go through this instance
+    @Value("${todo.overdue.queue.max-age:10m}")
+    private Duration maxAge;
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+
+    // Null until loaded, and again after a failed priority update
+    private Entries entries;
+
+    // When the entries were read from the database
+    private LocalDateTime loadedAt;
+
+    // Writes that committed during the load in progress, null when none is
+    private List<Consumer<Entries>> replay;
+
+    // Whether the load in progress missed a failed priority update and has to be discarded
+    private boolean loadStale;
+
+    /**
+     * The overdue items on {@code page}, counted from 0, most urgent first, or empty while the items are
+     * loading, in which case the caller goes to the database
+     */
+    public synchronized Optional<List<TodoItem>> page(int page, int size) {
+        LocalDateTime now = LocalDateTime.now();
+        if (replay == null && (entries == null || loadedAt.plus(maxAge).isBefore(now))) {
+            startLoad();
+        }
+        if (entries == null) {
+            return Optional.empty();
+        }
+        // Compares against the application clock, where the database query uses SYSDATE
+        entries.moveDue(now);
+        return Optional.of(entries.page(Math.max(0, page), size));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSaved(TodoSavedEvent event) {
+        TodoItem todo = event.todo().copy();
+        apply(current -> {
+            current.remove(todo.getId());
+            current.add(todo);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDeleted(TodoDeletedEvent event) {
+        apply(current -> current.remove(event.id()));
+    }
+
+    // Mirrors the UPDATE in PriorityUpdateJobService. After a failed job, the items are read again.
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPriorityBulkUpdated(TodoPriorityBulkUpdatedEvent event) {
+        if (!event.complete()) {
+            entries = null;
+            loadStale = replay != null;
+            return;
+        }
+        apply(current -> current.updatePriority(event));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    // Caller holds the lock
+    private void apply(Consumer<Entries> change) {
+        if (entries != null) {
+            change.accept(entries);
+        }
+        if (replay != null) {
+            replay.add(change);
+        }
+    }
+
+    // Caller holds the lock. The load is registered before the query runs, so no commit after its snapshot
+    // is missed.
+    private void startLoad() {
+        replay = new ArrayList<>();
+        loadStale = false;
+        LocalDateTime startedAt = LocalDateTime.now();
+        loader.execute(() -> {
+            Entries loaded = new Entries();
+            try {
+                todoRepository.forEachPendingWithDueDate(todo -> loaded.add(todo.copy()));
+            } catch (RuntimeException e) {
+                log.warn("Failed to load pending todo items with a due date", e);
+                synchronized (this) {
+                    replay = null;
+                }
+                return;
+            }
+            synchronized (this) {
+                replay.forEach(change -> change.accept(loaded));
+                if (!loadStale) {
+                    entries = loaded;
+                    loadedAt = startedAt;
+                }
+                replay = null;
+                log.debug("Loaded {} pending todo items with a due date", loaded.byId.size());
+            }
+        });
+    }
+
+    private static class Entries {
+
+        // Not yet due when last looked at, soonest first
+        private final TreeSet<TodoItem> upcoming = new TreeSet<>(DUE_ORDER);
+        private final TreeSet<TodoItem> overdue = new TreeSet<>(OVERDUE_ORDER);
+        private final Map<Long, TodoItem> byId = new HashMap<>();
+
+        // overdue in order, null once it has changed
+        private TodoItem[] ordered;
+
+        void moveDue(LocalDateTime now) {
+            while (!upcoming.isEmpty() && upcoming.first().getDueDate().isBefore(now)) {
+                overdue.add(upcoming.pollFirst());
+                ordered = null;
+            }
+        }
+
+        List<TodoItem> page(int page, int size) {
+            if (ordered == null) {
+                ordered = overdue.toArray(new TodoItem[0]);
+            }
+            int from = (int) Math.min((long) page * size, ordered.length);
+            return List.of(Arrays.copyOfRange(ordered, from, Math.min(from + size, ordered.length)));
+        }
+
+        void updatePriority(TodoPriorityBulkUpdatedEvent event) {
+            List<TodoItem> updated = new ArrayList<>();
+            for (TodoItem todo : byId.values()) {
+                if (todo.getDueDate().isBefore(event.cutoffDate())) {
+                    updated.add(todo);
+                }
+            }
+            // Priority is part of the overdue order, so the updated items are taken out and put back
+            for (TodoItem todo : updated) {
+                remove(todo.getId());
+                TodoItem copy = todo.copy();
+                copy.setPriority(event.newPriority());
+                copy.setUpdatedAt(event.updatedAt());
+                copy.setVersion(todo.getVersion() == null ? null : todo.getVersion() + 1);
+                add(copy);
+            }
+        }
+
+        // Every entry starts in the queue; the next read moves it on if it is already due
+        void add(TodoItem todo) {
+            if (todo.isCompleted() || todo.getDueDate() == null) {
+                return;
+            }
+            byId.put(todo.getId(), todo);
+            upcoming.add(todo);
+        }
+
+        void remove(Long id) {
+            TodoItem previous = byId.remove(id);
+            if (previous != null && !upcoming.remove(previous) && overdue.remove(previous)) {
+                ordered = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.microsoft.migration.todo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.microsoft.migration.todo.event.TodoDeletedEvent;
+import com.microsoft.migration.todo.event.TodoPriorityBulkUpdatedEvent;
+import com.microsoft.migration.todo.event.TodoSavedEvent;
+import com.microsoft.migration.todo.model.TodoItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Read-through caches for the TodoService queries, one per query shape, each bounded in size and time.
+ *
+ * <p>Writes made through TodoService evict exactly the entries they can change, once they commit: the item
+ * itself, the completed/pending list it was and is in, and the high-priority lists whose threshold its old or
+ * new priority meets. The time to live bounds staleness from writes made elsewhere.
+ *
+ * <p>Overdue pages are kept for a few seconds only, since tasks fall due as time passes without any write. They
+ * serve the overdue list when OverdueQueue is off or still loading, and any write to a pending task with a due
+ * date evicts them all.
+ *
+ * <p>A list load may read the rows before a write commits and finish after its eviction. Evicting by key can't
+ * reach such a load, since it is not in the cache yet, so each list eviction also bumps a generation. A list
+ * loaded across a change of generation is returned but not cached.
+ */
+@Component
+public class TodoQueryCache {
+
+    private final boolean enabled;
+    private final Cache<Long, TodoItem> byId;
+    private final Cache<Boolean, List<TodoItem>> byCompleted;
+    private final Cache<Integer, List<TodoItem>> byMinPriority;
+    private final Cache<OverduePage, List<TodoItem>> overdue;
+
+    // Bumped by every list eviction
+    private long listGeneration; // guarded by this
+
+    public TodoQueryCache(@Value("${todo.cache.enabled:true}") boolean enabled,
+                          @Value("${todo.cache.max-size:10000}") long maxSize,
+                          @Value("${todo.cache.max-lists:100}") long maxLists,
+                          @Value("${todo.cache.ttl:5m}") Duration ttl,
+                          @Value("${todo.cache.overdue-ttl:5s}") Duration overdueTtl) {
+        this.enabled = enabled;
+        this.byId = build(maxSize, ttl);
+        this.byCompleted = build(2, ttl);
+        this.byMinPriority = build(maxLists, ttl);
+        this.overdue = build(maxLists, overdueTtl);
+    }
+
+    private static <K, V> Cache<K, V> build(long maxSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<TodoItem> getById(Long id, Supplier<Optional<TodoItem>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        // A null from the loader caches nothing, so a todo created later is seen at once
+        return Optional.ofNullable(byId.get(id, key -> loader.get().map(TodoItem::copy).orElse(null)));
+    }
+
+    public List<TodoItem> getByCompleted(boolean completed, Supplier<List<TodoItem>> loader) {
+        return get(byCompleted, completed, loader);
+    }
+
+    public List<TodoItem> getByMinPriority(int minPriority, Supplier<List<TodoItem>> loader) {
+        return get(byMinPriority, minPriority, loader);
+    }
+
+    public List<TodoItem> getOverdue(int page, int size, Supplier<List<TodoItem>> loader) {
+        return get(overdue, new OverduePage(page, size), loader);
+    }
+
+    private <K> List<TodoItem> get(Cache<K, List<TodoItem>> cache, K key, Supplier<List<TodoItem>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        List<TodoItem> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation;
+        synchronized (this) {
+            generation = listGeneration;
+        }
+        // Copies, so cached items aren't tied to the persistence context that loaded them
+        List<TodoItem> loaded = loader.get().stream().map(TodoItem::copy).toList();
+        synchronized (this) {
+            if (generation == listGeneration) {
+                cache.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(TodoSavedEvent event) {
+        TodoItem previous = event.previous();
+        if (previous == null && !event.created()) {
+            // An update that didn't read the row first; the cached copy tells which lists it was in
+            previous = byId.getIfPresent(event.todo().getId());
+            if (previous == null) {
+                evictAllLists();
+            }
+        }
+        byId.invalidate(event.todo().getId());
+        evictLists(previous);
+        evictLists(event.todo());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(TodoDeletedEvent event) {
+        TodoItem previous = byId.getIfPresent(event.id());
+        byId.invalidate(event.id());
+        if (previous != null) {
+            evictLists(previous);
+        } else {
+            // Nothing tells which lists held it
+            evictAllLists();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriorityBulkUpdated(TodoPriorityBulkUpdatedEvent event) {
+        byId.asMap().values().removeIf(todo -> !todo.isCompleted() && todo.getDueDate() != null
+                && todo.getDueDate().isBefore(event.cutoffDate()));
+        // The updated items may sit in any list, under old priorities as well as the new one
+        synchronized (this) {
+            listGeneration++;
+            byCompleted.invalidate(false);
+            byMinPriority.invalidateAll();
+            overdue.invalidateAll();
+        }
+    }
+
+    private synchronized void evictAllLists() {
+        listGeneration++;
+        byCompleted.invalidateAll();
+        byMinPriority.invalidateAll();
+        overdue.invalidateAll();
+    }
+
+    private synchronized void evictLists(TodoItem todo) {
+        if (todo == null) {
+            return;
+        }
+        listGeneration++;
+        byCompleted.invalidate(todo.isCompleted());
+        byMinPriority.asMap().keySet().removeIf(minPriority -> minPriority <= todo.getPriority());
+        if (!todo.isCompleted() && todo.getDueDate() != null) {
+            overdue.invalidateAll();
+        }
+    }
+
+    public List<Stats> stats() {
+        return List.of(
+                Stats.of("byId", byId),
+                Stats.of("byCompleted", byCompleted),
+                Stats.of("byMinPriority", byMinPriority),
+                Stats.of("overdue", overdue));
+    }
+
+    private record OverduePage(int page, int size) {
+    }
+
+    public record Stats(String name, long size, long hits, long misses, double hitRate, long evictions) {
+
+        static Stats of(String name, Cache<?, ?> cache) {
+            CacheStats stats = cache.stats();
+            return new Stats(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                    stats.evictionCount());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.microsoft.migration.todo.cache;
+
+import com.microsoft.migration.todo.event.TodoDeletedEvent;
+import com.microsoft.migration.todo.event.TodoPriorityBulkUpdatedEvent;
+import com.microsoft.migration.todo.event.TodoSavedEvent;
+import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.repository.TodoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * The highest ranked todo items in the order of the top-priority query, kept in memory and maintained from
+ * write events, so the dashboard doesn't query the database at all.
+ *
+ * <p>Works as a bounded heap: a save that ranks above the lowest entry replaces it. Entries that leave
+ * (deletes, lowered priorities) can't be backfilled without knowing the next row, so once the cache drops
+ * below its size it reloads the top rows on the next read. Bulk priority updates reload it too.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.top-priority.cache.enabled", havingValue = "true")
+@Slf4j
+public class TopPriorityCache {
+
+    // Same order as TodoRepository.findTopPriorityTasks, with ID to keep items with equal keys apart
+    private static final Comparator<TodoItem> RANK = Comparator.comparingInt(TodoItem::getPriority).reversed()
+            .thenComparing(TodoItem::getCreatedAt, Comparator.reverseOrder())
+            .thenComparing(TodoItem::getId, Comparator.reverseOrder());
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Value("${todo.top-priority.cache.size:200}")
+    private int capacity;
+
+    private final TreeSet<TodoItem> ranked = new TreeSet<>(RANK);
+    private final Map<Long, TodoItem> byId = new HashMap<>();
+
+    // Whether ranked holds exactly the top rows of the table
+    private boolean loaded;
+
+    // Whether ranked holds every row of the table, which happens while the table is smaller than the cache
+    private boolean wholeTable;
+
+    /**
+     * Up to {@code limit} items with a priority above {@code priority}, or empty when the cache can't tell,
+     * in which case the caller goes to the database
+     */
+    public synchronized Optional<List<TodoItem>> top(int priority, int limit) {
+        if (!loaded) {
+            load();
+        }
+        List<TodoItem> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (TodoItem todo : ranked) {
+            if (result.size() == limit || todo.getPriority() <= priority) {
+                // Everything after this ranks lower, so the answer is complete
+                return Optional.of(result);
+            }
+            result.add(todo);
+        }
+        // Ran out of entries: complete only if there is nothing beyond them
+        return wholeTable || result.size() == limit ? Optional.of(result) : Optional.empty();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSaved(TodoSavedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        removeEntry(event.todo().getId());
+        TodoItem todo = event.todo().copy();
+        // Rows outside the cache rank below its last entry, so anything ranking above that belongs in it
+        if (wholeTable || (!ranked.isEmpty() && RANK.compare(todo, ranked.last()) < 0)) {
+            addEntry(todo);
+        }
+        while (ranked.size() > capacity) {
+            removeEntry(ranked.last().getId());
+            wholeTable = false;
+        }
+        checkComplete();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDeleted(TodoDeletedEvent event) {
+        if (loaded) {
+            removeEntry(event.id());
+            checkComplete();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPriorityBulkUpdated(TodoPriorityBulkUpdatedEvent event) {
+        loaded = false;
+    }
+
+    private void load() {
+        ranked.clear();
+        byId.clear();
+        for (TodoItem todo : todoRepository.findTopPriorityTasks(Integer.MIN_VALUE, capacity)) {
+            addEntry(todo.copy());
+        }
+        wholeTable = ranked.size() < capacity;
+        loaded = true;
+        log.debug("Loaded {} top priority todo items", ranked.size());
+    }
+
+    // A cache that lost entries while rows remain outside it no longer holds the top rows
+    private void checkComplete() {
+        if (ranked.size() < capacity && !wholeTable) {
+            loaded = false;
+        }
+    }
+
+    private void addEntry(TodoItem todo) {
+        ranked.add(todo);
+        byId.put(todo.getId(), todo);
+    }
+
+    private void removeEntry(Long id) {
+        TodoItem previous = byId.remove(id);
+        if (previous != null) {
+            ranked.remove(previous);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.microsoft.migration.todo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits how many requests use the database at once when requests run on virtual threads. Tomcat's thread
+ * pool caps platform threads, but nothing caps virtual threads. Without a limit, every request beyond the
+ * connection pool would block inside Hikari until its connection timeout, holding its memory the whole time.
+ *
+ * <p>The limit sits on the DataSource, so requests served from memory never wait for it. Callers wait for a
+ * permit in arrival order, for up to {@code todo.db.acquire-timeout}, and the API answers with a 503 after
+ * that. A permit is held from a thread's first getConnection until that connection is closed.
+ *
+ * <p>Connections a thread opens while it already holds one take no further permit, so threads holding permits
+ * never wait on each other for more. They still need a free connection in the pool, so by default the limit
+ * leaves {@code todo.priority-update.parallelism} connections of the pool outside it.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class DbConcurrencyLimiter implements BeanPostProcessor {
+
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+
+    public DbConcurrencyLimiter(
+            @Value("${todo.db.max-concurrency:0}") int maxConcurrency,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${todo.priority-update.parallelism:2}") int headroom,
+            @Value("${todo.db.acquire-timeout:5s}") Duration acquireTimeout) {
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : Math.max(1, poolSize - headroom);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof LimitedDataSource)) {
+            log.info("Using at most {} database connections at once on virtual threads", maxConcurrency);
+            return new LimitedDataSource(dataSource, new Semaphore(maxConcurrency, true), acquireTimeout);
+        }
+        return bean;
+    }
+
+    private static class LimitedDataSource extends DelegatingDataSource {
+
+        private final Semaphore permits;
+        private final Duration acquireTimeout;
+
+        // Connections the current thread has open, only the first of which holds a permit
+        private final ThreadLocal<AtomicInteger> open = ThreadLocal.withInitial(AtomicInteger::new);
+
+        LimitedDataSource(DataSource target, Semaphore permits, Duration acquireTimeout) {
+            super(target);
+            this.permits = permits;
+            this.acquireTimeout = acquireTimeout;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            return releasingOnClose(super::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            return releasingOnClose(() -> super.getConnection(username, password));
+        }
+
+        private void acquire() throws SQLException {
+            if (open.get().get() > 0) {
+                return;
+            }
+            try {
+                if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new SQLTransientConnectionException("Too many requests waiting for the database");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Interrupted waiting for the database", e);
+            }
+        }
+
+        private Connection releasingOnClose(ConnectionSource source) throws SQLException {
+            Connection connection;
+            try {
+                connection = source.get();
+            } catch (SQLException | RuntimeException e) {
+                if (open.get().get() == 0) {
+                    permits.release();
+                }
+                throw e;
+            }
+            AtomicInteger count = open.get();
+            count.incrementAndGet();
+            // Connections may be closed more than once; only the first close releases
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            if ("close".equals(method.getName()) && released.compareAndSet(false, true)
+                                    && count.decrementAndGet() == 0) {
+                                permits.release();
+                            }
+                        }
+                    });
+        }
+    }
+
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,22 @@
+package com.microsoft.migration.todo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops startup when virtual threads are turned on but the JRE doesn't have them. Before Java 21, Spring Boot
+ * ignores {@code spring.threads.virtual.enabled} and DbConcurrencyLimiter stays off. The application would then
+ * run on platform threads as if the virtual-threads profile weren't active.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsCheck {
+
+    public VirtualThreadsCheck() {
+        int version = Runtime.version().feature();
+        if (version < 21) {
+            throw new IllegalStateException(
+                    "spring.threads.virtual.enabled needs Java 21 or later, but this is Java " + version);
+        }
+    }
+}
@@ -1,16 +1,38 @@
 package com.microsoft.migration.todo.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.microsoft.migration.todo.cache.TodoQueryCache;
+import com.microsoft.migration.todo.model.BulkResult;
+import com.microsoft.migration.todo.model.PriorityUpdateJob;
 import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.model.TodoPage;
+import com.microsoft.migration.todo.model.TodoPatch;
+import com.microsoft.migration.todo.model.TodoStats;
+import com.microsoft.migration.todo.service.PriorityUpdateJobService;
+import com.microsoft.migration.todo.service.TodoBulkService;
 import com.microsoft.migration.todo.service.TodoService;
 import com.microsoft.migration.todo.util.OracleSqlDemonstrator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -20,12 +42,64 @@ public class TodoController {
     @Autowired
     private TodoService todoService;
 
+    @Autowired
+    private TodoBulkService todoBulkService;
+
+    @Autowired
+    private PriorityUpdateJobService priorityUpdateJobService;
+
     @Autowired
     private OracleSqlDemonstrator oracleSqlDemonstrator;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Newest first, capped at todo.list.max-size. If there are more, a Link header points to the next page.
     @GetMapping
     public ResponseEntity<List<TodoItem>> getAllTodos() {
-        return ResponseEntity.ok(todoService.getAllTodos());
+        TodoPage page = todoService.getAllTodos();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(HttpHeaders.LINK, "</api/todos/page?cursor=" + page.nextCursor() + ">; rel=\"next\"");
+        }
+        return response.body(page.items());
+    }
+
+    // Newest first, one page at a time. Pass the returned nextCursor back to get the following page.
+    @GetMapping("/page")
+    public ResponseEntity<TodoPage> getTodoPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            return ResponseEntity.ok(todoService.getTodoPage(cursor, size));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // All todos as newline-delimited JSON, written row by row as they are read from the database
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllTodos() {
+        // Let the generator buffer instead of flushing the response after every row
+        ObjectWriter writer = objectMapper.writerFor(TodoItem.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                // Lines are separated explicitly below, not by Jackson's default space between root values
+                generator.setRootValueSeparator(null);
+                todoService.streamAllTodos(todo -> {
+                    try {
+                        writer.writeValue(generator, todo);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -45,6 +119,34 @@ public class TodoController {
         try {
             TodoItem updatedTodo = todoService.updateTodo(id, todoDetails);
             return ResponseEntity.ok(updatedTodo);
+        } catch (OptimisticLockingFailureException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException ex) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Changes only the fields in the body. Send the version last read, as "version" in the body or
+    // as If-Match, to have the update rejected with 409 if someone else changed the item since.
+    @PatchMapping("/{id}")
+    public ResponseEntity<TodoItem> patchTodo(
+            @PathVariable Long id,
+            @RequestBody JsonNode body,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TodoPatch patch;
+        try {
+            patch = TodoPatch.from(body, objectMapper);
+            if (ifMatch != null) {
+                patch = patch.withVersion(Long.parseLong(ifMatch.replace("W/", "").replace("\"", "").trim()));
+            }
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            TodoItem updated = todoService.patchTodo(id, patch);
+            return ResponseEntity.ok().eTag(String.valueOf(updated.getVersion())).body(updated);
+        } catch (OptimisticLockingFailureException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException ex) {
             return ResponseEntity.notFound().build();
         }
@@ -60,6 +162,34 @@ public class TodoController {
         }
     }
 
+    // Bulk endpoints take a JSON array or NDJSON and read it item by item, so the body can be any size
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkResult> createTodos(InputStream body) throws IOException {
+        try (MappingIterator<TodoItem> items = objectMapper.readerFor(TodoItem.class).readValues(body)) {
+            return bulkResponse(todoBulkService.createTodos(items));
+        }
+    }
+
+    @PutMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkResult> updateTodos(InputStream body) throws IOException {
+        try (MappingIterator<TodoItem> items = objectMapper.readerFor(TodoItem.class).readValues(body)) {
+            return bulkResponse(todoBulkService.updateTodos(items));
+        }
+    }
+
+    // Ids to delete, as a JSON array or one per line
+    @DeleteMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkResult> deleteTodos(InputStream body) throws IOException {
+        try (MappingIterator<Long> ids = objectMapper.readerFor(Long.class).readValues(body)) {
+            return bulkResponse(todoBulkService.deleteTodos(ids));
+        }
+    }
+
+    private static ResponseEntity<BulkResult> bulkResponse(BulkResult result) {
+        return result.error() == null ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+    }
+
     @GetMapping("/completed")
     public ResponseEntity<List<TodoItem>> getTodosByCompleted(@RequestParam boolean completed) {
         return ResponseEntity.ok(todoService.getTodosByCompleted(completed));
@@ -71,8 +201,11 @@ public class TodoController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<TodoItem>> searchTodos(@RequestParam String keyword) {
-        return ResponseEntity.ok(todoService.searchTodos(keyword));
+    public ResponseEntity<List<TodoItem>> searchTodos(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(todoService.searchTodos(keyword, page, size));
     }
 
     @GetMapping("/top-priority")
@@ -83,16 +216,44 @@ public class TodoController {
     }
 
     @GetMapping("/overdue")
-    public ResponseEntity<List<TodoItem>> getOverdueTasks() {
-        return ResponseEntity.ok(todoService.getOverdueTasks());
+    public ResponseEntity<List<TodoItem>> getOverdueTasks(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(todoService.getOverdueTasks(page, size));
     }
 
+    // Served from a materialized view, so it costs one single-row read however large the table is
+    @GetMapping("/stats")
+    public ResponseEntity<TodoStats> getStats() {
+        return ResponseEntity.ok(todoService.getStats());
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<List<TodoQueryCache.Stats>> getCacheStats() {
+        return ResponseEntity.ok(todoService.getCacheStats());
+    }
+
+    // Starts the update in the background and answers at once; poll the returned Location for progress
     @PutMapping("/update-priority")
-    public ResponseEntity<Void> updateTasksPriority(
+    public ResponseEntity<PriorityUpdateJob> updateTasksPriority(
             @RequestParam LocalDateTime cutoffDate,
             @RequestParam int newPriority) {
-        todoService.updateTasksWithOracle(cutoffDate, newPriority);
-        return ResponseEntity.ok().build();
+        PriorityUpdateJob job = priorityUpdateJobService.submit(cutoffDate, newPriority);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/todos/update-priority/jobs/" + job.getId()))
+                .body(job);
+    }
+
+    @GetMapping("/update-priority/jobs")
+    public ResponseEntity<List<PriorityUpdateJob>> getPriorityUpdateJobs() {
+        return ResponseEntity.ok(priorityUpdateJobService.getJobs());
+    }
+
+    @GetMapping("/update-priority/jobs/{jobId}")
+    public ResponseEntity<PriorityUpdateJob> getPriorityUpdateJob(@PathVariable String jobId) {
+        return priorityUpdateJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping("/oracle-search")
@@ -102,21 +263,19 @@ public class TodoController {
 
     // Endpoint to demonstrate raw Oracle SQL usage
     @GetMapping("/oracle-demo")
-    public ResponseEntity<List<Map<String, Object>>> demonstrateOracleSpecificQuery(
+    // Rows are written as they are read, so large results don't build up in memory
+    public ResponseEntity<StreamingResponseBody> demonstrateOracleSpecificQuery(
             @RequestParam(defaultValue = "") String keyword,
             @RequestParam(defaultValue = "0") int minPriority) {
-        return ResponseEntity.ok(oracleSqlDemonstrator.executeRawOracleQuery(keyword, minPriority));
+        StreamingResponseBody body = out -> oracleSqlDemonstrator.streamRawOracleQuery(keyword, minPriority, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
-    // Endpoint to run the Oracle operations demo
-    @PostMapping("/run-oracle-operations")
-    public ResponseEntity<String> runOracleOperations() {
-        try {
-            oracleSqlDemonstrator.performOracleSpecificOperations();
-            return ResponseEntity.ok("Oracle-specific operations executed successfully");
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error executing Oracle operations: " + e.getMessage());
-        }
+    // No connection in time, including from DbConcurrencyLimiter on virtual threads
+    @ExceptionHandler(DataAccessResourceFailureException.class)
+    public ResponseEntity<Void> databaseUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
     }
 }
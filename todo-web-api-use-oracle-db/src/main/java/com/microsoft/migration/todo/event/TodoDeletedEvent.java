@@ -0,0 +1,7 @@
+package com.microsoft.migration.todo.event;
+
+/**
+ * Published by TodoService after a todo item was deleted and committed
+ */
+public record TodoDeletedEvent(Long id) {
+}
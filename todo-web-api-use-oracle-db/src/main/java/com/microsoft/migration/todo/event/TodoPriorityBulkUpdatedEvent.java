@@ -0,0 +1,12 @@
+package com.microsoft.migration.todo.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by PriorityUpdateJobService once a job has given every pending todo item due before
+ * {@code cutoffDate} the priority {@code newPriority}. When the job failed part way, {@code complete} is false:
+ * only some of those items changed, and copies of them have to be read again rather than updated.
+ */
+public record TodoPriorityBulkUpdatedEvent(LocalDateTime cutoffDate, int newPriority, LocalDateTime updatedAt,
+                                           boolean complete) {
+}
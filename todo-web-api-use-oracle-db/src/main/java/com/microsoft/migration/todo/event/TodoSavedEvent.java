@@ -0,0 +1,19 @@
+package com.microsoft.migration.todo.event;
+
+import com.microsoft.migration.todo.model.TodoItem;
+
+/**
+ * Published by TodoService after a todo item was created or updated and committed.
+ * {@code previous} is the item as it was before an update. It is null for a new item, and for an update
+ * that never read the row.
+ */
+public record TodoSavedEvent(TodoItem previous, TodoItem todo, boolean created) {
+
+    public static TodoSavedEvent created(TodoItem todo) {
+        return new TodoSavedEvent(null, todo, true);
+    }
+
+    public static TodoSavedEvent updated(TodoItem previous, TodoItem todo) {
+        return new TodoSavedEvent(previous, todo, false);
+    }
+}
@@ -0,0 +1,10 @@
+package com.microsoft.migration.todo.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk request. Items are committed in chunks, so when {@code error} is set,
+ * the first {@code processed} items were applied and the rest were not.
+ */
+public record BulkResult(int processed, List<Long> notFound, String error) {
+}
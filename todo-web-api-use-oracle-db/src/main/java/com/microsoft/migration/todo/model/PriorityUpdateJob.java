@@ -0,0 +1,67 @@
+package com.microsoft.migration.todo.model;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Progress of a background priority update, as returned by the job endpoints
+ */
+@Getter
+public class PriorityUpdateJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final LocalDateTime cutoffDate;
+    private final int newPriority;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile int chunksTotal;
+    private int chunksDone;
+    private long rowsUpdated;
+    private volatile String error;
+
+    public PriorityUpdateJob(LocalDateTime cutoffDate, int newPriority) {
+        this.cutoffDate = cutoffDate;
+        this.newPriority = newPriority;
+    }
+
+    public void start(int chunks) {
+        chunksTotal = chunks;
+        startedAt = LocalDateTime.now();
+        status = Status.RUNNING;
+    }
+
+    public synchronized void chunkDone(int rows) {
+        chunksDone++;
+        rowsUpdated += rows;
+    }
+
+    public void complete() {
+        finishedAt = LocalDateTime.now();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String message) {
+        error = message;
+        finishedAt = LocalDateTime.now();
+        status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public synchronized int getChunksDone() {
+        return chunksDone;
+    }
+
+    public synchronized long getRowsUpdated() {
+        return rowsUpdated;
+    }
+}
@@ -0,0 +1,39 @@
+package com.microsoft.migration.todo.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of todo items, newest first, with the cursor to pass back for the next page.
+ * {@code nextCursor} is null on the last page.
+ */
+public record TodoPage(List<TodoItem> items, String nextCursor) {
+
+    /**
+     * Position of the last item on a page. Encoded as an opaque string so clients don't build it themselves.
+     */
+    public record Cursor(LocalDateTime createdAt, long id) {
+
+        public static Cursor of(TodoItem item) {
+            return new Cursor(item.getCreatedAt(), item.getId());
+        }
+
+        public String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+        }
+    }
+}
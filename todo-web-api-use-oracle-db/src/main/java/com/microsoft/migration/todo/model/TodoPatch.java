@@ -0,0 +1,65 @@
+package com.microsoft.migration.todo.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A partial update: new values by column, for only the fields present in the request.
+ * A field given as null clears it, a field left out keeps its value.
+ *
+ * @param version the version the client last read, or null to update whatever the current version is
+ */
+public record TodoPatch(Map<String, Object> columns, Long version) {
+
+    public static TodoPatch from(JsonNode body, ObjectMapper objectMapper) {
+        if (body == null || !body.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (body.has("title")) {
+            if (!body.get("title").isTextual()) {
+                throw new IllegalArgumentException("title must be a string");
+            }
+            columns.put("TITLE", body.get("title").asText());
+        }
+        if (body.has("description")) {
+            columns.put("DESCRIPTION", body.get("description").isNull() ? null : body.get("description").asText());
+        }
+        if (body.has("completed")) {
+            if (!body.get("completed").isBoolean()) {
+                throw new IllegalArgumentException("completed must be true or false");
+            }
+            columns.put("COMPLETED", body.get("completed").asBoolean() ? 1 : 0);
+        }
+        if (body.has("priority")) {
+            if (!body.get("priority").isInt()) {
+                throw new IllegalArgumentException("priority must be a number");
+            }
+            columns.put("PRIORITY", body.get("priority").asInt());
+        }
+        if (body.has("dueDate")) {
+            columns.put("DUE_DATE", read(body.get("dueDate"), LocalDateTime.class, objectMapper));
+        }
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to update");
+        }
+        Long version = body.has("version") && !body.get("version").isNull() ? body.get("version").asLong() : null;
+        return new TodoPatch(columns, version);
+    }
+
+    public TodoPatch withVersion(Long version) {
+        return new TodoPatch(columns, version);
+    }
+
+    private static <T> T read(JsonNode value, Class<T> type, ObjectMapper objectMapper) {
+        try {
+            return objectMapper.treeToValue(value, type);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid value " + value + " for " + type.getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.microsoft.migration.todo.model;
+
+/**
+ * Counts of todo items, as kept by the TODO_STATS_MV materialized view.
+ *
+ * @param highPriority items with a priority of 8 or more
+ */
+public record TodoStats(long total, long completed, long pending, long highPriority) {
+}
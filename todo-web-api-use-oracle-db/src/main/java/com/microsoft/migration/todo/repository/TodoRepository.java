@@ -5,23 +5,47 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface TodoRepository extends JpaRepository<TodoItem, Long> {
+public interface TodoRepository extends JpaRepository<TodoItem, Long>, TodoRepositoryCustom {
 
     // Custom query methods
     List<TodoItem> findByCompleted(boolean completed);
 
     List<TodoItem> findByPriorityGreaterThanEqual(int priority);
 
-    // Oracle specific SQL with VARCHAR2
-    @Query(value = "SELECT * FROM TODO_ITEMS WHERE TITLE LIKE '%' || :keyword || '%' OR DESCRIPTION LIKE '%' || :keyword || '%'",
+    // Oracle Text search on IDX_TODO_TEXT, which covers TITLE and DESCRIPTION, best matches first
+    @Query(value = "SELECT * FROM TODO_ITEMS WHERE CONTAINS(TITLE, :textQuery, 1) > 0 " +
+                   "ORDER BY SCORE(1) DESC, ID DESC OFFSET :offset ROWS FETCH NEXT :limit ROWS ONLY",
            nativeQuery = true)
-    List<TodoItem> findByKeyword(String keyword);
+    List<TodoItem> searchFullText(String textQuery, int offset, int limit);
 
-    // Another Oracle specific query showing off more Oracle SQL features
-    @Query(value = "SELECT * FROM TODO_ITEMS WHERE PRIORITY > :priority AND ROWNUM <= :limit ORDER BY CREATED_AT DESC",
+    // Top-N with Oracle's row limiting clause. FETCH FIRST applies after ORDER BY, unlike ROWNUM in the WHERE clause,
+    // and the order matches IDX_TODO_PRIORITY_CREATED_AT so Oracle reads it backwards and stops after :limit rows.
+    @Query(value = "SELECT * FROM TODO_ITEMS WHERE PRIORITY > :priority " +
+                   "ORDER BY PRIORITY DESC, CREATED_AT DESC FETCH FIRST :limit ROWS ONLY",
            nativeQuery = true)
     List<TodoItem> findTopPriorityTasks(int priority, int limit);
+
+    // Pending items past their due date, most urgent first. The CASE is the key of IDX_TODO_OVERDUE, which holds
+    // only pending items with a due date, so Oracle range scans just the overdue rows and sorts only those.
+    @Query(value = "SELECT * FROM TODO_ITEMS WHERE CASE WHEN COMPLETED = 0 THEN DUE_DATE END < SYSDATE " +
+                   "ORDER BY PRIORITY DESC, DUE_DATE ASC, ID OFFSET :offset ROWS FETCH NEXT :limit ROWS ONLY",
+           nativeQuery = true)
+    List<TodoItem> findOverdue(int offset, int limit);
+
+    // Keyset pagination, newest first. Seeks past the last row of the previous page instead of
+    // skipping rows with OFFSET, so every page costs the same regardless of how deep it is.
+    @Query(value = "SELECT * FROM TODO_ITEMS ORDER BY CREATED_AT DESC, ID DESC FETCH FIRST :limit ROWS ONLY",
+           nativeQuery = true)
+    List<TodoItem> findFirstPage(int limit);
+
+    // The leading CREATED_AT <= bound lets Oracle range scan IDX_TODO_CREATED_AT_ID, the OR breaks ties on ID
+    @Query(value = "SELECT * FROM TODO_ITEMS " +
+                   "WHERE CREATED_AT <= :createdAt AND (CREATED_AT < :createdAt OR ID < :id) " +
+                   "ORDER BY CREATED_AT DESC, ID DESC FETCH FIRST :limit ROWS ONLY",
+           nativeQuery = true)
+    List<TodoItem> findPageAfter(LocalDateTime createdAt, long id, int limit);
 }
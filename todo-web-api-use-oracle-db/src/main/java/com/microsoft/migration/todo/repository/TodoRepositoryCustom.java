@@ -0,0 +1,20 @@
+package com.microsoft.migration.todo.repository;
+
+import com.microsoft.migration.todo.model.TodoItem;
+
+import java.util.function.Consumer;
+
+public interface TodoRepositoryCustom {
+
+    /**
+     * Hands every todo item, newest first, to {@code consumer} while reading them from a single cursor.
+     * Items are detached once consumed, so memory stays flat however large the table is.
+     */
+    void forEachNewestFirst(Consumer<TodoItem> consumer);
+
+    /**
+     * Hands every pending todo item with a due date, the whole of IDX_TODO_OVERDUE, to {@code consumer} the
+     * same way
+     */
+    void forEachPendingWithDueDate(Consumer<TodoItem> consumer);
+}
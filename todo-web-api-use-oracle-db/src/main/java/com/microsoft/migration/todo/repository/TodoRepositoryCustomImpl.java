@@ -0,0 +1,48 @@
+package com.microsoft.migration.todo.repository;
+
+import com.microsoft.migration.todo.model.TodoItem;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class TodoRepositoryCustomImpl implements TodoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Rows per round trip; the Oracle driver defaults to 10
+    @Value("${todo.stream.fetch-size:500}")
+    private int fetchSize;
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachNewestFirst(Consumer<TodoItem> consumer) {
+        forEach("SELECT * FROM TODO_ITEMS ORDER BY CREATED_AT DESC, ID DESC", consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachPendingWithDueDate(Consumer<TodoItem> consumer) {
+        forEach("SELECT * FROM TODO_ITEMS WHERE CASE WHEN COMPLETED = 0 THEN DUE_DATE END IS NOT NULL", consumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEach(String sql, Consumer<TodoItem> consumer) {
+        Query query = entityManager.createNativeQuery(sql, TodoItem.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+
+        try (Stream<TodoItem> rows = query.getResultStream()) {
+            rows.forEach(todo -> {
+                consumer.accept(todo);
+                entityManager.detach(todo);
+            });
+        }
+    }
+}
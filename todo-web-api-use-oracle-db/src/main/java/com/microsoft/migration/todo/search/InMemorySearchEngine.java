@@ -0,0 +1,243 @@
+package com.microsoft.migration.todo.search;
+
+import com.microsoft.migration.todo.event.TodoDeletedEvent;
+import com.microsoft.migration.todo.event.TodoPriorityBulkUpdatedEvent;
+import com.microsoft.migration.todo.event.TodoSavedEvent;
+import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.repository.TodoRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over title and description, held in memory so searches never reach the database.
+ * Every query word matches the terms it is a prefix of, case-insensitively. Results are ranked by how many
+ * query words match the title, newest first within a rank.
+ *
+ * <p>Built from a streaming scan of TODO_ITEMS before the application takes requests, then kept up to date
+ * from the events TodoService publishes after each write, once the write commits. Holds a copy of every
+ * todo item, so it needs heap in proportion to the table.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.search.engine", havingValue = "in-memory")
+@Slf4j
+public class InMemorySearchEngine implements TodoSearchEngine {
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Terms from title and description, sorted so a prefix maps to a contiguous range
+    private final TreeMap<String, LongPostings> terms = new TreeMap<>();
+
+    // Terms from the title only, for ranking
+    private final TreeMap<String, LongPostings> titleTerms = new TreeMap<>();
+
+    private final Map<Long, TodoItem> documents = new HashMap<>();
+
+    @PostConstruct
+    public void build() {
+        long start = System.currentTimeMillis();
+        todoRepository.forEachNewestFirst(this::index);
+        log.info("Built in-memory search index over {} todo items with {} terms in {} ms",
+                documents.size(), terms.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    public List<TodoItem> search(String keyword, int page, int size) {
+        List<String> words = normalize(TodoSearchEngine.words(keyword));
+        if (words.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            LongPostings matches = null;
+            List<LongPostings> titleMatches = new ArrayList<>(words.size());
+            for (String word : words) {
+                LongPostings matching = LongPostings.union(withPrefix(terms, word).values());
+                matches = matches == null ? matching : matches.intersect(matching);
+                if (matches.isEmpty()) {
+                    return List.of();
+                }
+                titleMatches.add(LongPostings.union(withPrefix(titleTerms, word).values()));
+            }
+
+            // Walk the ranks from the best down, newest first within each, and keep only the requested window
+            int skip = Math.max(0, page) * size;
+            List<TodoItem> results = new ArrayList<>(size);
+            for (int rank = words.size(); rank >= 0 && results.size() < size; rank--) {
+                for (int i = matches.size() - 1; i >= 0 && results.size() < size; i--) {
+                    long id = matches.get(i);
+                    if (titleHits(titleMatches, id) != rank) {
+                        continue;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        results.add(documents.get(id));
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(TodoSavedEvent event) {
+        index(event.todo());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(TodoDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            remove(event.id());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mirrors the UPDATE in PriorityUpdateJobService. Text is unchanged, so only the copies are replaced.
+    // After a failed job, the items in its scope are read again instead.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriorityBulkUpdated(TodoPriorityBulkUpdatedEvent event) {
+        if (!event.complete()) {
+            reread(event);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, TodoItem> entry : documents.entrySet()) {
+                TodoItem todo = entry.getValue();
+                if (inScope(todo, event)) {
+                    TodoItem updated = todo.copy();
+                    updated.setPriority(event.newPriority());
+                    updated.setUpdatedAt(event.updatedAt());
+                    updated.setVersion(todo.getVersion() == null ? null : todo.getVersion() + 1);
+                    entry.setValue(updated);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reread(TodoPriorityBulkUpdatedEvent event) {
+        List<Long> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (TodoItem todo : documents.values()) {
+                if (inScope(todo, event)) {
+                    ids.add(todo.getId());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (TodoItem todo : todoRepository.findAllById(ids)) {
+            lock.writeLock().lock();
+            try {
+                // Skip items deleted since, or saved since, whose events have already indexed a newer version
+                TodoItem current = documents.get(todo.getId());
+                if (current != null && (current.getVersion() == null || todo.getVersion() == null
+                        || todo.getVersion() > current.getVersion())) {
+                    index(todo);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static boolean inScope(TodoItem todo, TodoPriorityBulkUpdatedEvent event) {
+        return !todo.isCompleted() && todo.getDueDate() != null && todo.getDueDate().isBefore(event.cutoffDate());
+    }
+
+    private void index(TodoItem todo) {
+        // Keep a private copy: callers go on to change and serialize their own instance
+        TodoItem copy = todo.copy();
+        lock.writeLock().lock();
+        try {
+            remove(copy.getId());
+            documents.put(copy.getId(), copy);
+            Set<String> title = terms(copy.getTitle());
+            Set<String> all = new HashSet<>(title);
+            all.addAll(terms(copy.getDescription()));
+            add(titleTerms, title, copy.getId());
+            add(terms, all, copy.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void remove(Long id) {
+        TodoItem previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        Set<String> title = terms(previous.getTitle());
+        Set<String> all = new HashSet<>(title);
+        all.addAll(terms(previous.getDescription()));
+        remove(titleTerms, title, id);
+        remove(terms, all, id);
+    }
+
+    private static void add(Map<String, LongPostings> index, Set<String> docTerms, long id) {
+        for (String term : docTerms) {
+            index.computeIfAbsent(term, key -> new LongPostings()).add(id);
+        }
+    }
+
+    private static void remove(Map<String, LongPostings> index, Set<String> docTerms, long id) {
+        for (String term : docTerms) {
+            LongPostings postings = index.get(term);
+            if (postings != null) {
+                postings.remove(id);
+                if (postings.isEmpty()) {
+                    index.remove(term);
+                }
+            }
+        }
+    }
+
+    private static NavigableMap<String, LongPostings> withPrefix(TreeMap<String, LongPostings> index, String prefix) {
+        return index.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    private static int titleHits(List<LongPostings> titleMatches, long id) {
+        int hits = 0;
+        for (LongPostings postings : titleMatches) {
+            if (postings.contains(id)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static Set<String> terms(String text) {
+        return new HashSet<>(normalize(TodoSearchEngine.words(text)));
+    }
+
+    private static List<String> normalize(List<String> words) {
+        return words.stream().map(word -> word.toLowerCase(Locale.ROOT)).toList();
+    }
+}
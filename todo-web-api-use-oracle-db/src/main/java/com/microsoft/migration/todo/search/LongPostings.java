@@ -0,0 +1,115 @@
+package com.microsoft.migration.todo.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Sorted set of todo ids backed by a primitive array, so a posting list costs 8 bytes per id
+ * instead of a boxed Long and a tree node each. Not thread-safe; InMemorySearchEngine guards it.
+ */
+class LongPostings {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] ids;
+    private int size;
+
+    LongPostings() {
+        this(EMPTY, 0);
+    }
+
+    private LongPostings(long[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long get(int index) {
+        return ids[index];
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    void add(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    void remove(long id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Ids present in both lists, by a linear merge of the two sorted arrays
+     */
+    LongPostings intersect(LongPostings other) {
+        long[] result = new long[Math.min(size, other.size)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            long a = ids[i];
+            long b = other.ids[j];
+            if (a == b) {
+                result[count++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new LongPostings(result, count);
+    }
+
+    /**
+     * Ids present in any of the lists, for prefixes that match several terms
+     */
+    static LongPostings union(Collection<LongPostings> lists) {
+        if (lists.size() == 1) {
+            return lists.iterator().next();
+        }
+        int total = 0;
+        for (LongPostings list : lists) {
+            total += list.size;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (LongPostings list : lists) {
+            System.arraycopy(list.ids, 0, all, offset, list.size);
+            offset += list.size;
+        }
+        Arrays.sort(all);
+        int count = 0;
+        for (int i = 0; i < total; i++) {
+            if (count == 0 || all[count - 1] != all[i]) {
+                all[count++] = all[i];
+            }
+        }
+        return new LongPostings(all, count);
+    }
+}
@@ -0,0 +1,40 @@
+package com.microsoft.migration.todo.search;
+
+import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.repository.TodoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Searches with CONTAINS on the Oracle Text index IDX_TODO_TEXT. Whole words only.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.search.engine", havingValue = "oracle-text", matchIfMissing = true)
+public class OracleTextSearchEngine implements TodoSearchEngine {
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Override
+    public List<TodoItem> search(String keyword, int page, int size) {
+        List<String> words = TodoSearchEngine.words(keyword);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        String all = words.stream().map(word -> "{" + word + "}").collect(Collectors.joining(" AND "));
+        return todoRepository.searchFullText(rankedQuery(all), Math.max(0, page) * size, size);
+    }
+
+    /**
+     * Wraps a CONTAINS expression so title hits count double, on top of the score of the match anywhere in the item.
+     * Words must come from {@link TodoSearchEngine#words} and be wrapped in braces, which keeps words
+     * like AND or NEAR literal.
+     */
+    public static String rankedQuery(String match) {
+        return "((" + match + ") WITHIN TITLE)*2 ACCUM (" + match + ")";
+    }
+}
@@ -0,0 +1,32 @@
+package com.microsoft.migration.todo.search;
+
+import com.microsoft.migration.todo.model.TodoItem;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keyword search over the title and description of todo items.
+ * Picked with {@code todo.search.engine}: {@code oracle-text} (the default) or {@code in-memory}.
+ */
+public interface TodoSearchEngine {
+
+    /**
+     * Todo items matching every word of {@code keyword}, case-insensitively, best matches first
+     *
+     * @param page zero-based page number
+     */
+    List<TodoItem> search(String keyword, int page, int size);
+
+    /**
+     * Splits text into words on anything but letters and digits
+     */
+    static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+}
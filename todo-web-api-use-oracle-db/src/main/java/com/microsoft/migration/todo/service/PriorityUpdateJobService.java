@@ -0,0 +1,147 @@
+package com.microsoft.migration.todo.service;
+
+import com.microsoft.migration.todo.event.TodoPriorityBulkUpdatedEvent;
+import com.microsoft.migration.todo.model.PriorityUpdateJob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Raises the priority of overdue pending tasks in the background. Instead of one UPDATE over the whole
+ * table, the ID range is cut into chunks that are updated and committed one at a time, optionally several
+ * in parallel. Each chunk holds its row locks and undo only until it commits, so the table stays writable
+ * while the job runs.
+ *
+ * <p>Jobs run one after another, in submission order. The last {@code todo.priority-update.retained-jobs}
+ * jobs can be polled for progress.
+ */
+@Service
+@Slf4j
+public class PriorityUpdateJobService {
+
+    private static final String UPDATE_CHUNK = "UPDATE TODO_ITEMS " +
+                                               "SET PRIORITY = ?, UPDATED_AT = SYSTIMESTAMP, VERSION = VERSION + 1 " +
+                                               "WHERE ID BETWEEN ? AND ? " +
+                                               "AND DUE_DATE < ? " +
+                                               "AND COMPLETED = 0";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Width of the ID range updated per chunk and transaction
+    @Value("${todo.priority-update.chunk-size:5000}")
+    private long chunkSize;
+
+    @Value("${todo.priority-update.retained-jobs:100}")
+    private int retainedJobs;
+
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor();
+    private final ExecutorService chunkRunner;
+
+    private final Map<String, PriorityUpdateJob> jobs = new LinkedHashMap<>();
+
+    public PriorityUpdateJobService(@Value("${todo.priority-update.parallelism:2}") int parallelism) {
+        this.chunkRunner = Executors.newFixedThreadPool(parallelism);
+    }
+
+    public PriorityUpdateJob submit(LocalDateTime cutoffDate, int newPriority) {
+        PriorityUpdateJob job = new PriorityUpdateJob(cutoffDate, newPriority);
+        register(job);
+        jobRunner.execute(() -> run(job));
+        return job;
+    }
+
+    public synchronized Optional<PriorityUpdateJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public synchronized List<PriorityUpdateJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    private synchronized void register(PriorityUpdateJob job) {
+        jobs.put(job.getId(), job);
+        // Forget the oldest finished jobs beyond the limit
+        Iterator<PriorityUpdateJob> oldest = jobs.values().iterator();
+        while (jobs.size() > retainedJobs && oldest.hasNext()) {
+            if (oldest.next().isFinished()) {
+                oldest.remove();
+            }
+        }
+    }
+
+    private void run(PriorityUpdateJob job) {
+        boolean started = false;
+        try {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(ID) AS LO, MAX(ID) AS HI FROM TODO_ITEMS");
+            if (bounds.get("LO") == null) {
+                job.start(0);
+                job.complete();
+                return;
+            }
+            long lo = ((Number) bounds.get("LO")).longValue();
+            long hi = ((Number) bounds.get("HI")).longValue();
+            job.start((int) ((hi - lo) / chunkSize + 1));
+            log.info("Priority update job {} started: {} chunks over ids {} to {}", job.getId(), job.getChunksTotal(), lo, hi);
+
+            started = true;
+            Timestamp cutoff = Timestamp.valueOf(job.getCutoffDate());
+            AtomicBoolean failed = new AtomicBoolean();
+            List<CompletableFuture<Void>> chunks = new ArrayList<>(job.getChunksTotal());
+            for (long start = lo; start <= hi; start += chunkSize) {
+                long from = start;
+                long to = Math.min(start + chunkSize - 1, hi);
+                chunks.add(CompletableFuture.runAsync(() -> {
+                    // A failed chunk stops the rest; the chunks already committed stay
+                    if (!failed.get()) {
+                        int rows = jdbcTemplate.update(UPDATE_CHUNK, job.getNewPriority(), from, to, cutoff);
+                        job.chunkDone(rows);
+                    }
+                }, chunkRunner).whenComplete((result, e) -> {
+                    if (e != null) {
+                        failed.set(true);
+                    }
+                }));
+            }
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+            job.complete();
+            log.info("Priority update job {} updated {} rows", job.getId(), job.getRowsUpdated());
+            eventPublisher.publishEvent(new TodoPriorityBulkUpdatedEvent(
+                    job.getCutoffDate(), job.getNewPriority(), LocalDateTime.now(), true));
+        } catch (Exception e) {
+            log.error("Priority update job {} failed after {} rows", job.getId(), job.getRowsUpdated(), e);
+            job.fail(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            if (started) {
+                // The chunks that committed stay, so in-memory copies of the rows in scope are stale
+                eventPublisher.publishEvent(new TodoPriorityBulkUpdatedEvent(
+                        job.getCutoffDate(), job.getNewPriority(), LocalDateTime.now(), false));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobRunner.shutdownNow();
+        chunkRunner.shutdownNow();
+    }
+}
@@ -0,0 +1,140 @@
+package com.microsoft.migration.todo.service;
+
+import com.microsoft.migration.todo.event.TodoDeletedEvent;
+import com.microsoft.migration.todo.event.TodoSavedEvent;
+import com.microsoft.migration.todo.model.BulkResult;
+import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.repository.TodoRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates, updates and deletes todo items in bulk. Items are read from an iterator and written in chunks of
+ * {@code todo.bulk.chunk-size}, one transaction per chunk, so a request of any size needs memory for one chunk
+ * and never holds locks for long. Within a chunk Hibernate sends the statements in JDBC batches.
+ */
+@Service
+@Slf4j
+public class TodoBulkService {
+
+    // Oracle accepts at most 1000 expressions in an IN list
+    private static final int MAX_IN_LIST = 1000;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${todo.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    public BulkResult createTodos(Iterator<TodoItem> items) {
+        return inChunks(items, chunkSize, new ArrayList<>(), (chunk, notFound) -> {
+            List<TodoSavedEvent> events = new ArrayList<>(chunk.size());
+            for (TodoItem todo : chunk) {
+                // Ids come from the sequence, never from the request
+                todo.setId(null);
+                entityManager.persist(todo);
+                events.add(TodoSavedEvent.created(todo));
+            }
+            return events;
+        });
+    }
+
+    /**
+     * Replaces title, description, completed, priority and due date of each item, like PUT /api/todos/{id}.
+     * Ids that don't exist are reported and skipped.
+     */
+    public BulkResult updateTodos(Iterator<TodoItem> items) {
+        return inChunks(items, Math.min(chunkSize, MAX_IN_LIST), new ArrayList<>(), (chunk, notFound) -> {
+            // One SELECT ... WHERE ID IN (...) for the chunk instead of one findById per item
+            List<Long> ids = chunk.stream().map(TodoItem::getId).filter(Objects::nonNull).toList();
+            Map<Long, TodoItem> existing = todoRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(TodoItem::getId, Function.identity()));
+            List<TodoSavedEvent> events = new ArrayList<>(chunk.size());
+            for (TodoItem details : chunk) {
+                TodoItem todo = existing.get(details.getId());
+                if (todo == null) {
+                    notFound.add(details.getId());
+                    continue;
+                }
+                TodoItem previous = todo.copy();
+                todo.setTitle(details.getTitle());
+                todo.setDescription(details.getDescription());
+                todo.setCompleted(details.isCompleted());
+                todo.setPriority(details.getPriority());
+                todo.setDueDate(details.getDueDate());
+                events.add(TodoSavedEvent.updated(previous, todo));
+            }
+            return events;
+        });
+    }
+
+    public BulkResult deleteTodos(Iterator<Long> ids) {
+        return inChunks(ids, Math.min(chunkSize, MAX_IN_LIST), new ArrayList<>(), (chunk, notFound) -> {
+            // A single DELETE ... WHERE ID IN (...) per chunk; ids that don't exist are ignored
+            todoRepository.deleteAllByIdInBatch(chunk);
+            return chunk.stream().map(TodoDeletedEvent::new).toList();
+        });
+    }
+
+    /**
+     * Runs {@code work} on consecutive chunks, each in its own transaction, and publishes the events it returns
+     * once that transaction has committed. {@code work} adds the ids it couldn't find to the list it is given.
+     * Stops at the first chunk that fails.
+     */
+    private <T> BulkResult inChunks(Iterator<T> items, int size, List<Long> notFound,
+                                    BiFunction<List<T>, List<Long>, List<?>> work) {
+        int processed = 0;
+        int notFoundBefore = 0;
+        List<T> chunk = new ArrayList<>(size);
+        try {
+            // Reading the next item can fail too, on malformed input
+            while (items.hasNext()) {
+                chunk.add(items.next());
+                if (chunk.size() < size && items.hasNext()) {
+                    continue;
+                }
+                List<?> events = transactionTemplate.execute(status -> {
+                    List<?> result = work.apply(chunk, notFound);
+                    entityManager.flush();
+                    // Detach the chunk so the persistence context doesn't grow with the request
+                    entityManager.clear();
+                    return result;
+                });
+                events.forEach(eventPublisher::publishEvent);
+                processed += chunk.size() - (notFound.size() - notFoundBefore);
+                notFoundBefore = notFound.size();
+                chunk.clear();
+            }
+        } catch (RuntimeException e) {
+            log.error("Bulk operation failed after {} items", processed, e);
+            // The failed chunk was rolled back, so nothing in it counts
+            notFound.subList(notFoundBefore, notFound.size()).clear();
+            return new BulkResult(processed, notFound, e.getMessage());
+        }
+        return new BulkResult(processed, notFound, null);
+    }
+}
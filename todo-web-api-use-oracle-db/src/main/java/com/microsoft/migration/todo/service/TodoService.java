@@ -1,17 +1,35 @@
 package com.microsoft.migration.todo.service;
 
+import com.microsoft.migration.todo.cache.OverdueQueue;
+import com.microsoft.migration.todo.cache.TodoQueryCache;
+import com.microsoft.migration.todo.cache.TopPriorityCache;
+import com.microsoft.migration.todo.event.TodoDeletedEvent;
+import com.microsoft.migration.todo.event.TodoSavedEvent;
 import com.microsoft.migration.todo.model.TodoItem;
+import com.microsoft.migration.todo.model.TodoPage;
+import com.microsoft.migration.todo.model.TodoPatch;
+import com.microsoft.migration.todo.model.TodoStats;
 import com.microsoft.migration.todo.repository.TodoRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.Query;
+import com.microsoft.migration.todo.search.OracleTextSearchEngine;
+import com.microsoft.migration.todo.search.TodoSearchEngine;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.CallableStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class TodoService {
@@ -19,40 +37,127 @@ public class TodoService {
     @Autowired
     private TodoRepository todoRepository;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Autowired
+    private TodoSearchEngine searchEngine;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TodoQueryCache queryCache;
+
+    // Only present with todo.top-priority.cache.enabled
+    @Autowired
+    private ObjectProvider<TopPriorityCache> topPriorityCache;
+
+    // Only present with todo.overdue.queue.enabled
+    @Autowired
+    private ObjectProvider<OverdueQueue> overdueQueue;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${todo.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${todo.list.max-size:1000}")
+    private int maxListSize;
+
+    /**
+     * Returns the newest todo items, at most {@code todo.list.max-size} of them, with the cursor of the rest
+     */
+    public TodoPage getAllTodos() {
+        return page(null, maxListSize);
+    }
+
+    /**
+     * Returns the page after {@code cursor}, or the first page when it is null
+     */
+    public TodoPage getTodoPage(String cursor, int size) {
+        return page(cursor, Math.max(1, Math.min(size, maxPageSize)));
+    }
 
-    public List<TodoItem> getAllTodos() {
-        return todoRepository.findAll();
+    private TodoPage page(String cursor, int limit) {
+        // Ask for one extra row to know whether there is a next page without a COUNT(*)
+        List<TodoItem> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = todoRepository.findFirstPage(limit + 1);
+        } else {
+            TodoPage.Cursor after = TodoPage.Cursor.decode(cursor);
+            rows = todoRepository.findPageAfter(after.createdAt(), after.id(), limit + 1);
+        }
+        if (rows.size() <= limit) {
+            return new TodoPage(rows, null);
+        }
+        List<TodoItem> items = rows.subList(0, limit);
+        return new TodoPage(items, TodoPage.Cursor.of(items.get(limit - 1)).encode());
+    }
+
+    /**
+     * Hands every todo item, newest first, to {@code consumer} with flat memory use
+     */
+    public void streamAllTodos(Consumer<TodoItem> consumer) {
+        todoRepository.forEachNewestFirst(consumer);
     }
 
     public Optional<TodoItem> getTodoById(Long id) {
-        return todoRepository.findById(id);
+        return queryCache.getById(id, () -> todoRepository.findById(id));
     }
 
     public List<TodoItem> getTodosByCompleted(boolean completed) {
-        return todoRepository.findByCompleted(completed);
+        return queryCache.getByCompleted(completed, () -> todoRepository.findByCompleted(completed));
     }
 
     public List<TodoItem> getHighPriorityTodos(int minPriority) {
-        return todoRepository.findByPriorityGreaterThanEqual(minPriority);
+        return queryCache.getByMinPriority(minPriority, () -> todoRepository.findByPriorityGreaterThanEqual(minPriority));
+    }
+
+    public List<TodoQueryCache.Stats> getCacheStats() {
+        return queryCache.stats();
     }
 
-    public List<TodoItem> searchTodos(String keyword) {
-        return todoRepository.findByKeyword(keyword);
+    /**
+     * Reads the counts from the single row of TODO_STATS_MV, which Oracle keeps current as each write commits
+     */
+    public TodoStats getStats() {
+        return jdbcTemplate.queryForObject(
+                "SELECT TOTAL, COMPLETED, HIGH_PRIORITY FROM TODO_STATS_MV",
+                (rs, rowNum) -> {
+                    long total = rs.getLong(1);
+                    long completed = rs.getLong(2);
+                    return new TodoStats(total, completed, total - completed, rs.getLong(3));
+                });
+    }
+
+    /**
+     * Finds todos whose title or description contains every word of {@code keyword}, case-insensitively,
+     * best matches first, with whichever search engine is configured
+     */
+    public List<TodoItem> searchTodos(String keyword, int page, int size) {
+        return searchEngine.search(keyword, page, Math.max(1, Math.min(size, maxPageSize)));
     }
 
     public List<TodoItem> getTopPriorityTasks(int priority, int limit) {
+        TopPriorityCache cache = topPriorityCache.getIfAvailable();
+        if (cache != null) {
+            Optional<List<TodoItem>> cached = cache.top(priority, limit);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
         return todoRepository.findTopPriorityTasks(priority, limit);
     }
 
     public TodoItem createTodo(TodoItem todo) {
-        return todoRepository.save(todo);
+        TodoItem saved = todoRepository.save(todo);
+        eventPublisher.publishEvent(TodoSavedEvent.created(saved));
+        return saved;
     }
 
     public TodoItem updateTodo(Long id, TodoItem todoDetails) {
         TodoItem todo = todoRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Todo not found with id " + id));
+        TodoItem previous = todo.copy();
 
         todo.setTitle(todoDetails.getTitle());
         todo.setDescription(todoDetails.getDescription());
@@ -60,51 +165,122 @@ public class TodoService {
         todo.setPriority(todoDetails.getPriority());
         todo.setDueDate(todoDetails.getDueDate());
 
-        return todoRepository.save(todo);
+        TodoItem saved = todoRepository.save(todo);
+        eventPublisher.publishEvent(TodoSavedEvent.updated(previous, saved));
+        return saved;
     }
 
-    public void deleteTodo(Long id) {
-        todoRepository.deleteById(id);
-    }
+    /**
+     * Applies a partial update in one round trip: a single UPDATE that checks the version, bumps it and
+     * returns the new row, with no read beforehand. Throws OptimisticLockingFailureException when
+     * {@code patch} names a version other than the current one.
+     */
+    public TodoItem patchTodo(Long id, TodoPatch patch) {
+        List<Map.Entry<String, Object>> binds = new ArrayList<>(patch.columns().entrySet());
+        StringBuilder sql = new StringBuilder("BEGIN UPDATE TODO_ITEMS SET ");
+        for (Map.Entry<String, Object> column : binds) {
+            sql.append(column.getKey()).append(" = ?, ");
+        }
+        if (patch.columns().containsKey("DESCRIPTION") && !patch.columns().containsKey("TITLE")) {
+            // Oracle Text only reindexes a row when TITLE, the indexed column, is written
+            sql.append("TITLE = TITLE, ");
+        }
+        sql.append("UPDATED_AT = SYSTIMESTAMP, VERSION = VERSION + 1 WHERE ID = ?");
+        if (patch.version() != null) {
+            sql.append(" AND VERSION = ?");
+        }
+        sql.append(" RETURNING TITLE, DESCRIPTION, COMPLETED, PRIORITY, DUE_DATE, CREATED_AT, UPDATED_AT, VERSION")
+                .append(" INTO ?, ?, ?, ?, ?, ?, ?, ?; ? := SQL%ROWCOUNT; END;");
+
+        TodoItem updated = jdbcTemplate.execute(sql.toString(), (CallableStatement call) -> {
+            int index = 1;
+            for (Map.Entry<String, Object> column : binds) {
+                Object value = column.getValue();
+                if (value instanceof LocalDateTime dateTime) {
+                    call.setTimestamp(index++, Timestamp.valueOf(dateTime));
+                } else if (value == null) {
+                    call.setNull(index++, column.getKey().equals("DUE_DATE") ? Types.TIMESTAMP : Types.VARCHAR);
+                } else {
+                    call.setObject(index++, value);
+                }
+            }
+            call.setLong(index++, id);
+            if (patch.version() != null) {
+                call.setLong(index++, patch.version());
+            }
+            int returned = index;
+            call.registerOutParameter(index++, Types.VARCHAR);
+            call.registerOutParameter(index++, Types.VARCHAR);
+            call.registerOutParameter(index++, Types.INTEGER);
+            call.registerOutParameter(index++, Types.INTEGER);
+            call.registerOutParameter(index++, Types.TIMESTAMP);
+            call.registerOutParameter(index++, Types.TIMESTAMP);
+            call.registerOutParameter(index++, Types.TIMESTAMP);
+            call.registerOutParameter(index++, Types.BIGINT);
+            call.registerOutParameter(index, Types.INTEGER);
+            call.execute();
 
-    // Demonstrating Oracle-specific SQL with direct JDBC execution
-    @Transactional
-    public List<TodoItem> getOverdueTasks() {
-        String oracleSpecificSql = "SELECT * FROM TODO_ITEMS " +
-                                   "WHERE DUE_DATE < SYSDATE " +
-                                   "AND COMPLETED = 0 " +
-                                   "ORDER BY PRIORITY DESC, DUE_DATE ASC";
+            if (call.getInt(index) == 0) {
+                return null;
+            }
+            return new TodoItem(id,
+                    call.getString(returned),
+                    call.getString(returned + 1),
+                    call.getInt(returned + 2) == 1,
+                    call.getInt(returned + 3),
+                    toLocalDateTime(call.getTimestamp(returned + 4)),
+                    toLocalDateTime(call.getTimestamp(returned + 5)),
+                    toLocalDateTime(call.getTimestamp(returned + 6)),
+                    call.getLong(returned + 7));
+        });
 
-        Query query = entityManager.createNativeQuery(oracleSpecificSql, TodoItem.class);
-        return query.getResultList();
+        if (updated == null) {
+            // Only on the failure path: tell a missing row from a stale version
+            List<Long> current = jdbcTemplate.queryForList("SELECT VERSION FROM TODO_ITEMS WHERE ID = ?", Long.class, id);
+            if (current.isEmpty()) {
+                throw new RuntimeException("Todo not found with id " + id);
+            }
+            throw new OptimisticLockingFailureException(
+                    "Todo " + id + " is at version " + current.get(0) + ", not " + patch.version());
+        }
+        eventPublisher.publishEvent(TodoSavedEvent.updated(null, updated));
+        return updated;
     }
 
-    // Another example of Oracle-specific SQL
-    @Transactional
-    public void updateTasksWithOracle(LocalDateTime cutoffDate, int newPriority) {
-        String oracleSql = "UPDATE TODO_ITEMS " +
-                           "SET PRIORITY = :newPriority, " +
-                           "UPDATED_AT = SYSTIMESTAMP " +
-                           "WHERE DUE_DATE < :cutoffDate " +
-                           "AND COMPLETED = 0";
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
 
-        Query query = entityManager.createNativeQuery(oracleSql)
-                                    .setParameter("newPriority", newPriority)
-                                    .setParameter("cutoffDate", cutoffDate);
+    public void deleteTodo(Long id) {
+        todoRepository.deleteById(id);
+        eventPublisher.publishEvent(new TodoDeletedEvent(id));
+    }
 
-        query.executeUpdate();
+    /**
+     * Pending todos past their due date, highest priority first and longest overdue first within a priority,
+     * one page at a time
+     */
+    public List<TodoItem> getOverdueTasks(int page, int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        OverdueQueue queue = overdueQueue.getIfAvailable();
+        if (queue != null) {
+            Optional<List<TodoItem>> queued = queue.page(page, limit);
+            if (queued.isPresent()) {
+                return queued.get();
+            }
+        }
+        int from = Math.max(0, page);
+        return queryCache.getOverdue(from, limit, () -> todoRepository.findOverdue(from * limit, limit));
     }
 
-    // Example using Oracle's VARCHAR2 data type specifics in a query
-    @Transactional
+    // Oracle Text phrase search: the words of searchTerm next to each other, in order.
+    // Always runs on the Oracle Text index, whichever engine serves searchTodos.
     public List<TodoItem> searchWithOracleVarchar2(String searchTerm) {
-        String oracleSql = "SELECT * FROM TODO_ITEMS " +
-                           "WHERE DBMS_LOB.INSTR(TITLE, :searchTerm) > 0 " +
-                           "OR DBMS_LOB.INSTR(DESCRIPTION, :searchTerm) > 0";
-
-        Query query = entityManager.createNativeQuery(oracleSql, TodoItem.class)
-                                    .setParameter("searchTerm", searchTerm);
-
-        return query.getResultList();
+        List<String> words = TodoSearchEngine.words(searchTerm);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        String phrase = words.stream().map(word -> "{" + word + "}").collect(Collectors.joining(" "));
+        return todoRepository.searchFullText(OracleTextSearchEngine.rankedQuery(phrase), 0, maxPageSize);
     }
 }
@@ -1,125 +1,113 @@
 package com.microsoft.migration.todo.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
 
-import java.sql.Connection;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 @Component
 @Slf4j
 public class OracleSqlDemonstrator {
 
-    @Autowired
-    private JdbcTemplate jdbcTemplate;
+    // Column positions in RAW_ORACLE_QUERY. Reading by index skips the name lookup the driver does per call.
+    private static final int ID = 1;
+    private static final int TITLE = 2;
+    private static final int SHORT_DESC = 3;
+    private static final int IS_LONG_DESC = 4;
+    private static final int PRIORITY = 5;
+    private static final int FORMATTED_DUE_DATE = 6;
+    private static final int DAYS_SINCE_CREATION = 7;
 
     /**
-     * Demonstrates executing raw Oracle SQL queries directly
-     * This method shows Oracle-specific SQL features like:
+     * Oracle SQL showing features like:
      * - VARCHAR2 data type
      * - Oracle specific date functions
      * - Oracle specific string functions
      */
-    public List<Map<String, Object>> executeRawOracleQuery(String keyword, int minPriority) {
-        String sql = """
-                SELECT
-                    ID,
-                    TITLE,
-                    SUBSTR(DESCRIPTION, 1, 50) AS SHORT_DESC,
-                    CASE WHEN LENGTH(DESCRIPTION) > 50 THEN 'Y' ELSE 'N' END AS IS_LONG_DESC,
-                    PRIORITY,
-                    TO_CHAR(DUE_DATE, 'YYYY-MM-DD HH24:MI:SS') AS FORMATTED_DUE_DATE,
-                    ROUND(SYSDATE - CREATED_AT) AS DAYS_SINCE_CREATION
-                FROM
-                    TODO_ITEMS
-                WHERE
-                    (UPPER(TITLE) LIKE UPPER('%' || ? || '%') OR
-                     UPPER(DESCRIPTION) LIKE UPPER('%' || ? || '%'))
-                    AND PRIORITY >= ?
-                ORDER BY
-                    PRIORITY DESC,
-                    DUE_DATE ASC
-                """;
-
-        List<Map<String, Object>> results = new ArrayList<>();
-
-        try (Connection conn = jdbcTemplate.getDataSource().getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            // Set parameters
-            stmt.setString(1, keyword);
-            stmt.setString(2, keyword);
-            stmt.setInt(3, minPriority);
+    private static final String RAW_ORACLE_QUERY = """
+            SELECT
+                ID,
+                TITLE,
+                SUBSTR(DESCRIPTION, 1, 50) AS SHORT_DESC,
+                CASE WHEN LENGTH(DESCRIPTION) > 50 THEN 'Y' ELSE 'N' END AS IS_LONG_DESC,
+                PRIORITY,
+                TO_CHAR(DUE_DATE, 'YYYY-MM-DD HH24:MI:SS') AS FORMATTED_DUE_DATE,
+                ROUND(SYSDATE - CAST(CREATED_AT AS DATE)) AS DAYS_SINCE_CREATION
+            FROM
+                TODO_ITEMS
+            WHERE
+                (UPPER(TITLE) LIKE UPPER('%' || ? || '%') OR
+                 UPPER(DESCRIPTION) LIKE UPPER('%' || ? || '%'))
+                AND PRIORITY >= ?
+            ORDER BY
+                PRIORITY DESC,
+                DUE_DATE ASC
+            """;
 
-            // Execute query
-            ResultSet rs = stmt.executeQuery();
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
-            // Process results
-            while (rs.next()) {
-                Map<String, Object> row = new HashMap<>();
-                row.put("id", rs.getLong("ID"));
-                row.put("title", rs.getString("TITLE"));
-                row.put("shortDescription", rs.getString("SHORT_DESC"));
-                row.put("isLongDescription", "Y".equals(rs.getString("IS_LONG_DESC")));
-                row.put("priority", rs.getInt("PRIORITY"));
-                row.put("formattedDueDate", rs.getString("FORMATTED_DUE_DATE"));
-                row.put("daysSinceCreation", rs.getInt("DAYS_SINCE_CREATION"));
-                results.add(row);
-            }
+    @Autowired
+    private ObjectMapper objectMapper;
 
-            log.info("Executed Oracle-specific SQL query with {} results", results.size());
-            return results;
-
-        } catch (SQLException e) {
-            log.error("Error executing Oracle SQL", e);
-            throw new RuntimeException("Failed to execute Oracle SQL query", e);
-        }
-    }
+    // Rows per round trip; the Oracle driver defaults to 10
+    @Value("${todo.stream.fetch-size:500}")
+    private int fetchSize;
 
     /**
-     * Demonstrates Oracle-specific database operations
-     * Uses Oracle's VARCHAR2 data type and other Oracle-specific functions
+     * Demonstrates executing raw Oracle SQL queries directly. Each row is written to {@code out} as it is read,
+     * as an element of a JSON array. Nothing is collected, so memory stays flat however many rows match.
      */
-    public void performOracleSpecificOperations() {
-        // Example of creating a temporary table with VARCHAR2
-        String createTempTable = """
-                DECLARE
-                   v_count NUMBER;
-                BEGIN
-                   SELECT COUNT(*) INTO v_count FROM USER_TABLES WHERE TABLE_NAME = 'TEMP_TODO_STATS';
-                   IF v_count > 0 THEN
-                      EXECUTE IMMEDIATE 'DROP TABLE TEMP_TODO_STATS';
-                   END IF;
-
-                   EXECUTE IMMEDIATE 'CREATE TABLE TEMP_TODO_STATS (
-                      CATEGORY VARCHAR2(100),
-                      COUNT_VALUE NUMBER,
-                      LAST_UPDATED TIMESTAMP
-                   )';
-
-                   -- Insert some statistics
-                   EXECUTE IMMEDIATE 'INSERT INTO TEMP_TODO_STATS VALUES (''TOTAL'', (SELECT COUNT(*) FROM TODO_ITEMS), SYSTIMESTAMP)';
-                   EXECUTE IMMEDIATE 'INSERT INTO TEMP_TODO_STATS VALUES (''COMPLETED'', (SELECT COUNT(*) FROM TODO_ITEMS WHERE COMPLETED = 1), SYSTIMESTAMP)';
-                   EXECUTE IMMEDIATE 'INSERT INTO TEMP_TODO_STATS VALUES (''PENDING'', (SELECT COUNT(*) FROM TODO_ITEMS WHERE COMPLETED = 0), SYSTIMESTAMP)';
-                   EXECUTE IMMEDIATE 'INSERT INTO TEMP_TODO_STATS VALUES (''HIGH_PRIORITY'', (SELECT COUNT(*) FROM TODO_ITEMS WHERE PRIORITY >= 8), SYSTIMESTAMP)';
+    public void streamRawOracleQuery(String keyword, int minPriority, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartArray();
+            int[] rows = {0};
+            jdbcTemplate.query(rawOracleQuery(keyword, minPriority), (RowCallbackHandler) rs -> {
+                try {
+                    writeRow(rs, json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+            json.writeEndArray();
+            log.info("Streamed Oracle-specific SQL query with {} results", rows[0]);
+        }
+    }
 
-                   COMMIT;
-                END;
-                """;
+    private static void writeRow(ResultSet rs, JsonGenerator json) throws SQLException, IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", rs.getLong(ID));
+        json.writeStringField("title", rs.getString(TITLE));
+        json.writeStringField("shortDescription", rs.getString(SHORT_DESC));
+        json.writeBooleanField("isLongDescription", "Y".equals(rs.getString(IS_LONG_DESC)));
+        json.writeNumberField("priority", rs.getInt(PRIORITY));
+        json.writeStringField("formattedDueDate", rs.getString(FORMATTED_DUE_DATE));
+        json.writeNumberField("daysSinceCreation", rs.getInt(DAYS_SINCE_CREATION));
+        json.writeEndObject();
+    }
 
-        try {
-            jdbcTemplate.execute(createTempTable);
-            log.info("Successfully executed Oracle PL/SQL block to create and populate temporary statistics table");
-        } catch (Exception e) {
-            log.error("Error executing Oracle PL/SQL block", e);
-        }
+    // JdbcTemplate closes the statement and result set once the rows are read
+    private PreparedStatementCreator rawOracleQuery(String keyword, int minPriority) {
+        return connection -> {
+            PreparedStatement stmt = connection.prepareStatement(RAW_ORACLE_QUERY);
+            stmt.setFetchSize(fetchSize);
+            stmt.setString(1, keyword);
+            stmt.setString(2, keyword);
+            stmt.setInt(3, minPriority);
+            return stmt;
+        };
     }
 }